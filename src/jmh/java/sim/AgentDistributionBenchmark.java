@@ -0,0 +1,95 @@
+/*
+ * AgentDistributionBenchmark.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sim.AgentDistribution.Distribution;
+
+
+/**
+ * Distribution of agents over a chain graph, for every distribution. Each
+ * invocation resets the graph (AgentDistribution.init()) and distributes all
+ * agents again, as at the start of a run.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AgentDistributionBenchmark {
+
+
+    @Param({"SINGLE", "RANDOM_SINGLE", "EVEN_SPREAD", "RANDOM_SPREAD",
+            "CHAIN_ENDS"})
+    public String distribution;
+
+    @Param({"10"})
+    public int numNodes;
+
+    @Param({"1000", "1000000"})
+    public int numAgents;
+
+
+    private ExtendedGraph g;
+    private AgentDistribution dist;
+
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.logOff();
+
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+
+        g = BenchmarkSupport.chain(numNodes);
+        g.setNumAgents(numAgents);
+        g.setAgentDistribution(Distribution.valueOf(distribution));
+        g.setSINGLE_nodeID(g.getNodeId(0));
+        g.reset();
+        rs.init(g, g.getPopulation());
+
+        dist = new AgentDistribution(rs, null);
+    }
+
+
+    @Benchmark
+    public ExtendedGraph execute() {
+        dist.init(g, g.getPopulation());
+        dist.execute();
+        return g;
+    }
+}
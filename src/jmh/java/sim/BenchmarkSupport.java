@@ -0,0 +1,81 @@
+/*
+ * BenchmarkSupport.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import org.pmw.tinylog.Configurator;
+import org.pmw.tinylog.Level;
+
+
+/**
+ * Set up shared by the JMH benchmarks
+ *
+ */
+class BenchmarkSupport {
+
+
+    /**
+     * Turn logging off, so the benchmarks measure the simulation, not the
+     * log writer
+     */
+    static void logOff() {
+        Configurator.currentConfig().level(Level.OFF).activate();
+    }
+
+
+    /**
+     * Undirected chain graph, from the chain generator. Implicit, as in a
+     * simulation without visualization.
+     *
+     * @param numNodes Number of nodes
+     * @return Graph
+     */
+    static ExtendedGraph chain(int numNodes) {
+        ExtendedGraph g = new ExtendedGraph("Benchmark");
+        GraphGeneratorSource ggs = new GraphGeneratorSource(new SimulatorContext());
+        ggs.graphChain(numNodes, false, false, false);
+        ggs.generateGraph(g);
+
+        return g;
+    }
+
+
+    /**
+     * Graph with agents distributed, ready for a run (see
+     * TestSupport.populate())
+     *
+     * @param numNodes Number of nodes of the chain graph
+     * @param numAgents Number of agents
+     * @param distribution How agents are distributed
+     * @param nodeSelection How nodes are selected
+     * @param rs Random source, seeded, init'ed here with the graph
+     * @return Graph
+     */
+    static ExtendedGraph populatedChain(int numNodes, int numAgents,
+                                        AgentDistribution.Distribution distribution,
+                                        Simulator.NodeSelection nodeSelection,
+                                        RandomSource rs) {
+        ExtendedGraph g = chain(numNodes);
+        TestSupport.populate(g, numAgents, distribution, nodeSelection, rs);
+
+        return g;
+    }
+}
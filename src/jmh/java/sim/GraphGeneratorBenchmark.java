@@ -0,0 +1,101 @@
+/*
+ * GraphGeneratorBenchmark.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Generation of chain, grid and fully connected graphs, with their nodes and
+ * edges. Each invocation generates a new graph from scratch, as a generator
+ * can only be run once.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphGeneratorBenchmark {
+
+
+    /**
+     * Number of generator events, roughly the number of nodes. For the grid,
+     * the length of a side.
+     */
+    @Param({"100"})
+    public int events;
+
+
+    private SimulatorContext ctx;
+
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.logOff();
+        ctx = new SimulatorContext();
+    }
+
+
+    @Benchmark
+    public ExtendedGraph chain() {
+        GraphGeneratorSource ggs = new GraphGeneratorSource(ctx);
+        ggs.graphChain(events, false, false, false);
+        return generate(ggs);
+    }
+
+
+    @Benchmark
+    public ExtendedGraph grid() {
+        GraphGeneratorSource ggs = new GraphGeneratorSource(ctx);
+        ggs.graphGrid(events, false, false);
+        return generate(ggs);
+    }
+
+
+    @Benchmark
+    public ExtendedGraph full() {
+        GraphGeneratorSource ggs = new GraphGeneratorSource(ctx);
+        ggs.graphFullyConnected(events, false, false);
+        return generate(ggs);
+    }
+
+
+    private static ExtendedGraph generate(GraphGeneratorSource ggs) {
+        ExtendedGraph g = new ExtendedGraph("Benchmark");
+        ggs.generateNodesAndEdges(g);
+        return g;
+    }
+}
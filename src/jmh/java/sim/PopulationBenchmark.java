@@ -0,0 +1,107 @@
+/*
+ * PopulationBenchmark.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Adding and removing agents of a node, as the traverse action does, for a
+ * range of node populations. Removal swaps the last agent of the node into
+ * the place of the removed one, so the cost should stay flat as the
+ * population grows.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PopulationBenchmark {
+
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int numAgents;
+
+
+    private Population p;
+    private RandomGenerator rng;
+
+
+    /**
+     * Two node chain, all agents in the first node
+     */
+    @Setup
+    public void setup() {
+        BenchmarkSupport.logOff();
+
+        ExtendedGraph g = BenchmarkSupport.chain(2);
+        g.setNumAgents(numAgents);
+        g.reset();
+
+        p = g.getPopulation();
+        for (int i = 0; i < numAgents; i++) {
+            p.addAgent(0, i);
+        }
+
+        rng = new Xoroshiro128PlusGenerator(2552);
+    }
+
+
+    /**
+     * Move an agent picked at random to the other node and back, so the
+     * first node keeps its population
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public int move() {
+        p.addAgent(1, p.removeAgent(0, rng.nextInt(p.getAgentCount(0))));
+        p.addAgent(0, p.removeAgent(1, 0));
+        return p.getAgentCount(0);
+    }
+
+
+    /**
+     * Remove the first agent of a node, whose place the last one takes, and
+     * add it back
+     */
+    @Benchmark
+    public int swapWithLast() {
+        p.addAgent(0, p.removeAgent(0, 0));
+        return p.getAgent(0, 0);
+    }
+}
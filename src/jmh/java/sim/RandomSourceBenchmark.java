@@ -0,0 +1,181 @@
+/*
+ * RandomSourceBenchmark.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sim.AgentDistribution.Distribution;
+import sim.Simulator.NodeSelection;
+
+
+/**
+ * Each random choice of RandomSource, for each generator. Agents are spread
+ * evenly over a chain graph, so every node can serve both actions.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RandomSourceBenchmark {
+
+
+    @Param({"FAST", "REFERENCE"})
+    public String generator;
+
+    @Param({"10"})
+    public int numNodes;
+
+    @Param({"1000"})
+    public int numAgents;
+
+
+    private RandomSource rs;
+    private int node;
+    private final int[] pair = new int[2];
+
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.logOff();
+
+        rs = new RandomSource();
+        rs.seed(RandomSource.Generator.valueOf(generator), 2552);
+
+        BenchmarkSupport.populatedChain(numNodes, numAgents,
+                                        Distribution.EVEN_SPREAD,
+                                        NodeSelection.WEIGHTED, rs);
+        node = numNodes / 2;
+    }
+
+
+    @Benchmark
+    public int nextAgentIndex() {
+        return rs.nextAgentIndex(node);
+    }
+
+
+    @Benchmark
+    public int nextAgent() {
+        return rs.nextAgent(node);
+    }
+
+
+    @Benchmark
+    public int[] nextAgentPair() {
+        rs.nextAgentPair(node, pair);
+        return pair;
+    }
+
+
+    @Benchmark
+    public int nextLeavingEdge() {
+        return rs.nextLeavingEdge(node);
+    }
+
+
+    @Benchmark
+    public int nextNode() {
+        return rs.nextNode();
+    }
+
+
+    @Benchmark
+    public int nextNodeInteract() {
+        return rs.nextNode(TimeStep.ACTION_INTERACT);
+    }
+
+
+    @Benchmark
+    public int nextNodeTraverse() {
+        return rs.nextNode(TimeStep.ACTION_TRAVERSE);
+    }
+
+
+    @Benchmark
+    public int nextNodeWeightedInteract() {
+        return rs.nextNodeWeighted(TimeStep.ACTION_INTERACT);
+    }
+
+
+    @Benchmark
+    public int nextNodeWeightedTraverse() {
+        return rs.nextNodeWeighted(TimeStep.ACTION_TRAVERSE);
+    }
+
+
+    @Benchmark
+    public int nextAction() {
+        return rs.nextAction();
+    }
+
+
+    @Benchmark
+    public int nextActionWeighted() {
+        return rs.nextActionWeighted();
+    }
+
+
+    @Benchmark
+    public int nextInt() {
+        return rs.nextInt(numAgents);
+    }
+
+
+    @Benchmark
+    public double nextDouble() {
+        return rs.nextDouble();
+    }
+
+
+    /**
+     * Small mean, drawn by inversion
+     */
+    @Benchmark
+    public long nextPoissonInversion() {
+        return rs.nextPoisson(3.0);
+    }
+
+
+    /**
+     * Large mean, drawn by transformed rejection, as for the leaps of a
+     * large population
+     */
+    @Benchmark
+    public long nextPoissonRejection() {
+        return rs.nextPoisson(10000.0);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * TimeStepBenchmark.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sim.AgentDistribution.Distribution;
+import sim.Simulator.ActionSelection;
+import sim.Simulator.NodeSelection;
+
+
+/**
+ * A single time step, for every action selection and node selection, taken
+ * either alone or as part of a run. The election never completes (see
+ * TestSupport.TERM_B_NEVER).
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimeStepBenchmark {
+
+
+    // Strings, as the generated code can not see the protected enums
+    @Param({"NON_WEIGHTED", "WEIGHTED"})
+    public String actionSelection;
+
+    @Param({"NON_WEIGHTED", "WEIGHTED"})
+    public String nodeSelection;
+
+    @Param({"10"})
+    public int numNodes;
+
+    @Param({"1000", "1000000"})
+    public int numAgents;
+
+
+    private static final int RUN_STEPS = 1000;
+
+
+    private TimeStep ts;
+
+    private int maxSteps = 0;
+
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.logOff();
+
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+
+        ExtendedGraph g = BenchmarkSupport.populatedChain(numNodes, numAgents,
+                                Distribution.EVEN_SPREAD,
+                                NodeSelection.valueOf(nodeSelection),
+                                rs);
+
+        ts = new TimeStep(g, g.getPopulation(), 0, TestSupport.TERM_B_NEVER,
+                          ActionSelection.valueOf(actionSelection), rs, null);
+    }
+
+
+    @Benchmark
+    public void step() {
+        ts.step();
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(RUN_STEPS)
+    public void run() {
+        maxSteps += RUN_STEPS;
+        ts.runUntilComplete(maxSteps);
+    }
+}
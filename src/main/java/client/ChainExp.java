@@ -55,6 +55,7 @@ public class ChainExp {
         sim.agentDistribution(Distribution.SINGLE);
         sim.setSingleAgentDistNodeID("0");
         sim.nodeSelection(NodeSelection.WEIGHTED);
+        sim.parallel(0);
 
         sim.execute();
     }
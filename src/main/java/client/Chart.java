@@ -0,0 +1,70 @@
+/*
+ * Chart.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package client;
+
+import java.io.File;
+import java.io.IOException;
+
+import sim.MarkersChart;
+
+
+/**
+ * Make the markers chart of a simulation that has already run, from its data
+ * file. Simulations that saved their data (saveSimData()) but no chart can
+ * have one made this way, after the fact, on any machine.
+ *
+ * Usage: Chart <name of the logs directory>, for example log.2014-07-14_23-15-03
+ *
+ */
+public class Chart {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: Chart <name of the logs directory>");
+            System.exit(-1);
+        }
+
+        String dirName = args[0];
+        File dir = new File(System.getProperty("user.dir") + File.separator +
+                            "logs" + File.separator + dirName);
+        File[] data = dir.listFiles();
+
+        if (data != null) {
+            for (File f : data) {
+                String name = f.getName();
+
+                if (name.startsWith("data.") && name.endsWith(".jsonl")) {
+                    String timestamp = name.substring("data.".length(),
+                                                      name.length() -
+                                                      ".jsonl".length());
+
+                    MarkersChart.fromData(dirName, timestamp).save();
+                    return;
+                }
+            }
+        }
+
+        System.err.println("No data file in " + dir);
+        System.exit(-1);
+    }
+}
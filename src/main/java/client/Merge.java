@@ -0,0 +1,63 @@
+/*
+ * Merge.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package client;
+
+import java.io.IOException;
+
+import org.pmw.tinylog.Level;
+
+import sim.SimulatorMerge;
+import sim.TinylogProperties;
+
+
+/**
+ * Put the shards of a sweep back together, into a logs directory of its own,
+ * with the same data file, markers chart and metadata statistics as the sweep
+ * would have had on a single machine. See Simulator.shard().
+ *
+ * Usage: Merge <logs directory of each shard>, for example
+ * log.2014-07-14_23-15-03 log.2014-07-14_23-15-04
+ *
+ */
+public class Merge {
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: Merge <logs directory of each shard>");
+            System.exit(-1);
+        }
+
+        TinylogProperties tinylog = new TinylogProperties(Level.INFO);
+
+        try {
+            SimulatorMerge.merge(args, tinylog.getDirName(),
+                                       tinylog.getTimestamp());
+        } catch (IOException e) {
+            System.err.println("Merge failed: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        System.out.println("Merged into logs/" + tinylog.getDirName());
+    }
+}
@@ -63,6 +63,12 @@ public class Visualization {
          */
         sim.vis();
 
+        /*
+         * Draw at 30 frames per second, rather than every event, to watch the
+         * simulation at full speed
+         */
+        //sim.visFrameRate(30);
+
         /*
          * Turn on charts, as in display them
          */
@@ -24,6 +24,9 @@ package sim;
 /**
  * Representation of an autonomous agent
  *
+ * The simulation itself keeps agents in an AgentStore, as primitive arrays.
+ * This is a standalone copy of one agent's state, see AgentStore.getAgent().
+ *
  */
 public class Agent {
 
@@ -101,14 +104,15 @@ public class Agent {
     ///////////////////////////////////////////////////////////////////////////
 
 
-//    public String toString() {
-//        return "\n\t AID: " + AID +
-//                ";\n\t Leader AID:  " + leaderAID +
-//                ";\n\t Conversions: " + conversions +
-//                ";\n\t Met followers: " + metFollowers +
-//                ";\n\t Is leader: " + isLeader +
-//                ";\n\t Election Complete: " + electionComplete;
-//    }
+    @Override
+    public String toString() {
+        return "\n\t AID: " + AID +
+                ";\n\t Leader AID:  " + leaderAID +
+                ";\n\t Conversions: " + conversions +
+                ";\n\t Met followers: " + metFollowers +
+                ";\n\t Is leader: " + isLeader +
+                ";\n\t Election Complete: " + electionComplete;
+    }
 
 
     /**
@@ -21,9 +21,6 @@
 
 package sim;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-
 import org.pmw.tinylog.Logger;
 
 
@@ -87,10 +84,26 @@ public class AgentDistribution {
     private ExtendedGraph g;
 
 
-    private GraphVis gv = GraphVis.getInstance();
+    /**
+     * Population of the run, agents are placed in it
+     */
+    private Population p;
+
+
+    /**
+     * Index of the node selected by RANDOM_SINGLE agent distribution in the
+     * last run. This is for internal reference.
+     */
+    private int RANDOM_SINGLE_nodeIndex;
+
+
+    /**
+     * Graph visualization to update, null if visualization is off
+     */
+    private GraphVis gv;
 
 
-    private RandomSource rs = RandomSource.getInstance();
+    private RandomSource rs;
 
 
     private boolean flag_vis;
@@ -101,8 +114,16 @@ public class AgentDistribution {
     ///////////////////////////////////////////////////////////////////////////
 
 
-    public AgentDistribution(boolean flag_vis) {
-        this.flag_vis = flag_vis;
+    /**
+     * Distribute agents with random choices from the given source
+     *
+     * @param rs Random source, init'ed with the graph to distribute over
+     * @param gv Graph visualization to update, null if visualization is off
+     */
+    public AgentDistribution(RandomSource rs, GraphVis gv) {
+        this.rs = rs;
+        this.gv = gv;
+        flag_vis = gv != null;
     }
 
 
@@ -111,29 +132,24 @@ public class AgentDistribution {
     ///////////////////////////////////////////////////////////////////////////
 
 
-    public void init(ExtendedGraph g) {
+    /**
+     * Get ready to distribute agents. The population is reset.
+     *
+     * @param g Graph of the simulation, for its settings
+     * @param p Population of the run
+     */
+    public void init(ExtendedGraph g, Population p) {
         this.g = g;
-        this.g.reset();
+        this.p = p;
+        this.p.reset();
         Logger.info("Agent distribution INIT");
     }
 
 
     public void execute() {
-        /*
-         * User sets agent dist algo. Have to check that it has been done, and
-         * that its correct.
-         */
+        checkSettings(g);
         Distribution algo = g.getAgentDistribution();
 
-        if (algo == null) {
-            Logger.warn("Agent distribution algorithm NOT set or invalid - " +
-                        "default to SINGLE with all agents in node 0");
-
-            g.setSINGLE_nodeID(g.getNode(0).getId());
-            g.setAgentDistribution(Distribution.SINGLE);
-            algo = Distribution.SINGLE;
-        }
-
 
         Logger.info("{0} distribution of agents - BEGIN", algo);
 
@@ -159,54 +175,88 @@ public class AgentDistribution {
     }
 
 
-    ///////////////////////////////////////////////////////////////////////////
-    // PRIVATE METHODS - DISTRIBUTION ALGORITHMS
-    ///////////////////////////////////////////////////////////////////////////
-
+    /**
+     * User sets agent dist algo. Have to check that it has been done, and
+     * that its correct. Where not, the settings of the graph are set to the
+     * defaults. Done once before the runs, as runs on different threads share
+     * the graph, and then only read it.
+     *
+     * @param g Graph of the simulation
+     */
+    protected void checkSettings(ExtendedGraph g) {
+        if (g.getAgentDistribution() == null) {
+            Logger.warn("Agent distribution algorithm NOT set or invalid - " +
+                        "default to SINGLE with all agents in node 0");
 
-    private void single() {
-        ExtendedNode n = g.getNode(g.getSINGLE_nodeID());
+            g.setSINGLE_nodeID(g.getNodeId(0));
+            g.setAgentDistribution(Distribution.SINGLE);
+        }
 
         // Since the user sets the node id
-        if (n == null) {
+        if (g.getAgentDistribution() == Distribution.SINGLE &&
+            (g.getSINGLE_nodeID() == null ||
+             g.getNodeIndex(g.getSINGLE_nodeID()) < 0)) {
             Logger.warn("Node ID invalid, either not set or not found. Will "
                         + "choose node at INDEX 0");
 
-            n = g.getNode(0);
-
             // In case needed for reference later, set it correctly here
-            g.setSINGLE_nodeID(n.getId());
+            g.setSINGLE_nodeID(g.getNodeId(0));
         }
+    }
 
-        n.setAgents(createAgents());
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    protected int getRANDOM_SINGLE_nodeIndex() {
+        return RANDOM_SINGLE_nodeIndex;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS - DISTRIBUTION ALGORITHMS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private void single() {
+        int n = g.getNodeIndex(g.getSINGLE_nodeID());
+
+        int[] agents = createAgents();
+        p.addAgents(n, agents, 0, agents.length);
 
         if (flag_vis) {
-            gv.updateNode(n.getId());
+            gv.updateNode(n);
         }
     }
 
 
     private void randomSingle() {
-        ExtendedNode n = rs.nextNode();
-        n.setAgents(createAgents());
-        g.setRANDOM_SINGLE_nodeID(n.getId());
+        int n = rs.nextNode();
+        int[] agents = createAgents();
+        p.addAgents(n, agents, 0, agents.length);
+        RANDOM_SINGLE_nodeIndex = n;
 
         Logger.info("All agents placed in node - {0}", n);
 
         if (flag_vis) {
-            gv.updateNode(n.getId());
+            gv.updateNode(n);
         }
     }
 
 
     private void randomSpread() {
-        int remainingAgents = g.getNumAgents();
-        ArrayList<Agent> agents = createAgents();
+        int remainingAgents = p.getNumAgents();
+        int[] agents = createAgents();
+
+        // Agents before this index have been allocated
+        int next = 0;
 
         // While there are still agents to be allocated
         while (remainingAgents > 0) {
             int allocate = 0;
-            ExtendedNode n = rs.nextNode();
+            int n = rs.nextNode();
 
             if (remainingAgents == 1) {
                 // Due to exclusive range of nextInt()
@@ -220,84 +270,88 @@ public class AgentDistribution {
                  * nextInt() is exclusive is and so is subList(). So we drop
                  * two values, have to add one back
                  */
-                allocate = rs.nextInt(agents.size() + 1);
+                allocate = rs.nextInt(remainingAgents + 1);
             }
 
-            ArrayList<Agent> sublist = new ArrayList<Agent>(agents.subList(0, allocate));
-            n.addAgents(sublist);
+            p.addAgents(n, agents, next, next + allocate);
             Logger.trace("Allocated {0} agents to {1}", allocate, n);
 
-            agents.removeAll(sublist);
-            remainingAgents = agents.size();
+            next += allocate;
+            remainingAgents -= allocate;
 
             if (flag_vis) {
-                gv.updateNode(n.getId());
+                gv.updateNode(n);
             }
         }
 
         // Log final starting distribution of agents
-        Iterator<ExtendedNode> it = g.getNodeIterator();
-        while (it.hasNext()) {
-            Logger.info(it.next());
+        for (int i = 0; i < p.getTopology().numNodes(); i++) {
+            Logger.info("Node {0}: {1} agents", i, p.getAgentCount(i));
         }
     }
 
 
     private void evenSpread() {
-        int numNodes = g.getNodeCount();
-        ArrayList<Agent> agents = createAgents();
+        int numNodes = p.getTopology().numNodes();
+        int numAgents = p.getNumAgents();
+        int[] agents = createAgents();
+
+        // Agents before this index have been allocated
+        int next = 0;
 
 
         /*
          * Handle possible remainder. Check if number of agents can be evenly
          * spread across the graph
          */
-        int remainder = g.getNumAgents() % numNodes;
+        int remainder = numAgents % numNodes;
 
         if (remainder != 0) {
             Logger.info("Number of agents NOT evenly divisible by the number " +
                         "of nodes; First {0} nodes will have an extra agent " +
                         "added to them", remainder);
 
+            /*
+             * Node i gets agent 2i. The agents skipped over (1, 3, ...) are
+             * moved up, to keep them in order ahead of the rest.
+             */
             for (int i = 0; i < remainder; i++) {
-                ExtendedNode n = g.getNode(i);
-                n.addAgent(agents.remove(i));
+                p.addAgent(i, agents[2 * i]);
+            }
+
+            for (int i = remainder - 1; i >= 0; i--) {
+                agents[remainder + i] = agents[2 * i + 1];
             }
+
+            next = remainder;
         }
 
 
         /*
          * Now we can evenly distribute the remaining agents
          */
-        int allocation = agents.size() / numNodes;
+        int allocation = (numAgents - next) / numNodes;
         Logger.info("Adding {0} agents to each node", allocation);
 
-        Iterator<ExtendedNode> it = g.getNodeIterator();
-
-        while (it.hasNext()) {
-            ExtendedNode n = it.next();
-
-            // Sublist is inclusive to exclusive
-            ArrayList<Agent> sublist = new ArrayList<Agent>(agents.subList(0, allocation));
-            n.addAgents(sublist);
-
-            agents.removeAll(sublist);
+        for (int n = 0; n < numNodes; n++) {
+            p.addAgents(n, agents, next, next + allocation);
+            next += allocation;
 
             if (flag_vis) {
-                gv.updateNode(n.getId());
+                gv.updateNode(n);
             }
         }
     }
 
 
     public void chainEnds() {
-        ExtendedNode head = g.getNode(0);
-        ExtendedNode tail = g.getNode(g.getNodeCount() - 1);
+        int head = 0;
+        int tail = p.getTopology().numNodes() - 1;
 
-        ArrayList<Agent> agents = createAgents();
+        int[] agents = createAgents();
 
         int alloc = 0;
-        int numAgents = g.getNumAgents();
+        int numAgents = p.getNumAgents();
 
         if ((numAgents % 2) != 0) {
             // Odd number of agents
@@ -308,10 +362,10 @@ public class AgentDistribution {
             alloc = numAgents / 2;
         }
 
-        head.setAgents(new ArrayList<Agent>(agents.subList(0, alloc)));
+        p.addAgents(head, agents, 0, alloc);
 
-        // Tail takes on the remainder - sublist to end
-        tail.setAgents(new ArrayList<Agent>(agents.subList(alloc, numAgents)));
+        // Tail takes on the remainder - to the end
+        p.addAgents(tail, agents, alloc, numAgents);
     }
 
 
@@ -321,17 +375,18 @@ public class AgentDistribution {
 
 
     /**
-     * Create the agents. AID's start from 0 and go to n - 1
+     * List the agents to place. The agents themselves live in the
+     * population's AgentStore, these are their slots (AID's), from 0 to n - 1
      *
-     * @return Array list of the agent(s)
+     * @return Array of the agent slot(s)
      */
-    private ArrayList<Agent> createAgents() {
-        int numAgents = g.getNumAgents();
+    private int[] createAgents() {
+        int numAgents = p.getNumAgents();
 
-        ArrayList<Agent> agents = new ArrayList<Agent>(numAgents);
+        int[] agents = new int[numAgents];
 
         for (int i = 0; i < numAgents; i++) {
-            agents.add(new Agent(i));
+            agents[i] = i;
         }
 
         return agents;
@@ -0,0 +1,273 @@
+/*
+ * AgentStore.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * State of all the agents of a simulation run, as parallel primitive arrays
+ * (struct of arrays). An agent is just a slot, an index into these arrays.
+ * The slot is also the agent's AID, from 0 to numAgents - 1, so the AID
+ * itself needs no storage.
+ *
+ * Takes 13 bytes per agent, instead of an Agent object per agent. Nodes hold
+ * the slots of the agents they contain.
+ *
+ */
+public class AgentStore {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /*
+     * Bits of flags
+     */
+    private static final byte FLAG_LEADER = 1;
+    private static final byte FLAG_ELECTION_COMPLETE = 2;
+
+
+    private final int size;
+
+
+    /**
+     * Who does each agent believe is the leader? Itself to start with
+     */
+    private final int[] leaderAID;
+
+
+    /**
+     * Number of agents each agent has converted (infected) with its leaderAID
+     */
+    private final int[] conversions;
+
+
+    /**
+     * Number of agents each agent has interacted with who are following the
+     * same leader
+     */
+    private final int[] metFollowers;
+
+
+    /**
+     * "Is leader" and "election complete" flags of each agent
+     */
+    private final byte[] flags;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Create the agents, in their starting state
+     *
+     * @param size Number of agents
+     */
+    public AgentStore(int size) {
+        this.size = size;
+
+        leaderAID = new int[size];
+        conversions = new int[size];
+        metFollowers = new int[size];
+        flags = new byte[size];
+
+        reset();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Put every agent back in its starting state. Leader ID set to its own
+     * AID, counters to 0, and flags to false. Same as a new Agent.
+     */
+    public void reset() {
+        for (int i = 0; i < size; i++) {
+            leaderAID[i] = i;
+            conversions[i] = 0;
+            metFollowers[i] = 0;
+            flags[i] = 0;
+        }
+    }
+
+
+    /**
+     * Agent converted (infected) another. Increment the conversions counter
+     *
+     * @param slot Agent in question
+     */
+    public void converted(int slot) {
+        conversions[slot]++;
+    }
+
+
+    /**
+     * Agent met a follower. Increment the met followers counter
+     *
+     * @param slot Agent in question
+     */
+    public void metFollower(int slot) {
+        metFollowers[slot]++;
+    }
+
+
+    /**
+     * Write the state of every agent, see read()
+     *
+     * @param out Where to write to
+     * @throws IOException If it can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+
+        for (int i = 0; i < size; i++) {
+            out.writeInt(leaderAID[i]);
+            out.writeInt(conversions[i]);
+            out.writeInt(metFollowers[i]);
+            out.writeByte(flags[i]);
+        }
+    }
+
+
+    /**
+     * Set the state of every agent to one written by write()
+     *
+     * @param in Where to read from
+     * @throws IOException If it can't be read, or was written for a different
+     *                     number of agents
+     */
+    public void read(DataInput in) throws IOException {
+        int n = in.readInt();
+
+        if (n != size) {
+            throw new IOException("Agent state for " + n + " agents, not " +
+                                  size);
+        }
+
+        for (int i = 0; i < size; i++) {
+            leaderAID[i] = in.readInt();
+            conversions[i] = in.readInt();
+            metFollowers[i] = in.readInt();
+            flags[i] = in.readByte();
+        }
+    }
+
+
+    /**
+     * Copy of an agent's state, as an Agent. Meant for logging and tests, not
+     * for the simulation itself.
+     *
+     * @param slot Agent in question
+     * @return Snapshot of the agent
+     */
+    public Agent getAgent(int slot) {
+        Agent agent = new Agent(slot);
+        agent.setLeaderAID(leaderAID[slot]);
+        agent.setConversions(conversions[slot]);
+        agent.setMetFollowers(metFollowers[slot]);
+        agent.setLeader(isLeader(slot));
+        agent.setElectionComplete(isElectionComplete(slot));
+
+        return agent;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public int getLeaderAID(int slot) {
+        return leaderAID[slot];
+    }
+
+
+    public int getConversions(int slot) {
+        return conversions[slot];
+    }
+
+
+    public int getMetFollowers(int slot) {
+        return metFollowers[slot];
+    }
+
+
+    public boolean isLeader(int slot) {
+        return (flags[slot] & FLAG_LEADER) != 0;
+    }
+
+
+    public boolean isElectionComplete(int slot) {
+        return (flags[slot] & FLAG_ELECTION_COMPLETE) != 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - SETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public void setLeaderAID(int slot, int leaderAID) {
+        this.leaderAID[slot] = leaderAID;
+    }
+
+
+    public void setLeader(int slot, boolean isLeader) {
+        setFlag(slot, FLAG_LEADER, isLeader);
+    }
+
+
+    public void setElectionComplete(int slot, boolean electionComplete) {
+        setFlag(slot, FLAG_ELECTION_COMPLETE, electionComplete);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private void setFlag(int slot, byte flag, boolean value) {
+        if (value) {
+            flags[slot] |= flag;
+        }
+        else {
+            flags[slot] &= ~flag;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * ChainTopology.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+
+/**
+ * Implicit topology of a chain graph, as ChainGenerator makes it. Node i is
+ * linked to node i + 1, and, if doubly linked, back to node i - 1. Leaving
+ * edges are in the same order as in the generated graph.
+ *
+ */
+public class ChainTopology extends ImplicitTopology {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private final int numNodes;
+    private final boolean directed;
+
+
+    /**
+     * Only applies to directed chains, undirected edges go both ways anyway
+     */
+    private final boolean doublyLinked;
+
+
+    /**
+     * Does the last node have an edge back to the first?
+     */
+    private final boolean loopBack;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * @param numNodes Number of nodes
+     * @param directed Are the edges directed?
+     * @param doublyLinked Are the nodes doubly linked?
+     * @param loopBack Does the last node have an edge back to the first?
+     */
+    public ChainTopology(int numNodes, boolean directed,
+                                       boolean doublyLinked,
+                                       boolean loopBack) {
+        this.numNodes = numNodes;
+        this.directed = directed;
+        this.doublyLinked = doublyLinked && directed;
+        this.loopBack = loopBack;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    @Override
+    public int numNodes() {
+        return numNodes;
+    }
+
+
+    @Override
+    public int outDegree(int node) {
+        int last = numNodes - 1;
+        int outDegree = 0;
+
+        if (node < last) {
+            outDegree++;
+        }
+
+        if ((!directed || doublyLinked) && node > 0) {
+            outDegree++;
+        }
+
+        // Loop back edge, undirected it also leaves the first node
+        if (loopBack && (node == last || (!directed && node == 0))) {
+            outDegree++;
+        }
+
+        return outDegree;
+    }
+
+
+    @Override
+    public int neighbour(int node, int k) {
+        int last = numNodes - 1;
+
+        if (directed) {
+            if (node < last) {
+                if (k == 0) {
+                    return node + 1;
+                }
+                k--;
+            }
+
+            if (doublyLinked && node > 0) {
+                if (k == 0) {
+                    return node - 1;
+                }
+            }
+
+            // Loop back edge of the last node
+            return 0;
+        }
+
+        if (node > 0) {
+            if (k == 0) {
+                return node - 1;
+            }
+            k--;
+        }
+
+        if (node < last && k == 0) {
+            return node + 1;
+        }
+
+        // Loop back edge, joins the two ends
+        return node == 0 ? last : 0;
+    }
+
+
+    /**
+     * Only the ends of a chain can be dead ends
+     */
+    @Override
+    public boolean hasDeadEnd() {
+        return outDegree(0) == 0 || outDegree(numNodes - 1) == 0;
+    }
+
+
+    @Override
+    public int nodeIndex(String id) {
+        return parseIndex(id, numNodes);
+    }
+
+
+    @Override
+    public String nodeId(int node) {
+        return Integer.toString(node);
+    }
+}
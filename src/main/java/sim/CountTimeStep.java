@@ -0,0 +1,636 @@
+/*
+ * CountTimeStep.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.Logger;
+
+
+/**
+ * Time step for a well-mixed population, all agents in a single dead end
+ * node, as in the original paper. Every step is then an interaction between
+ * two agents picked at random, and agents no longer need to be told apart.
+ *
+ * A follower (an agent that believes another is the leader) only matters
+ * through its leaderAID and election complete flag. Its counters are never
+ * looked at again. So are those of an agent that believes election is
+ * complete. Only candidates, agents that are still their own leader, keep
+ * their full state. Everyone else is counted:
+ *
+ *     - Agents that don't believe election is complete, by leaderAID. The
+ *       candidate of a leaderAID, if there still is one, is one of them.
+ *     - Agents that believe election is complete and follow the real leader
+ *     - Agents that believe election is complete and follow anyone else
+ *
+ * The first are kept as an urn, an array with one entry per agent, so that
+ * an agent is drawn in O(1). Followers of the real leader come first, then
+ * the rest in no order.
+ *
+ * Most interactions late in a run change nothing: two followers of the same
+ * leader, or two agents that believe election is complete and follow someone
+ * other than the real leader. From the counts, the number of pairs that do
+ * change something (effective pairs) is known at every step. So
+ * runUntilComplete() skips the no-op steps before the next effective one in
+ * a single geometric draw, and then draws an effective pair directly.
+ *
+ * A run is thus the same as one of TimeStep in distribution, markers
+ * included, but not draw for draw.
+ *
+ * Needs termB >= 0. Otherwise a follower that was never checked could still
+ * believe election is complete, from the counters it had as a candidate.
+ *
+ */
+public class CountTimeStep implements RunEngine {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private boolean flag_infectionComplete;
+    private boolean flag_leaderElectionComplete;
+    private boolean flag_allElectionComplete;
+
+
+    /**
+     * The current time step. Every step is an interaction.
+     */
+    private int step;
+
+
+    private int infectionCounter;
+    private int electionCompleteCounter;
+
+
+    /**
+     * Agents that don't believe election is complete, followers of the real
+     * leader first. Each entry is the leaderAID of the agent, shifted left by
+     * one, with the low bit set if the agent is the candidate of that
+     * leaderAID. A candidate is its own leader, so there is at most one per
+     * leaderAID.
+     */
+    private final int[] urn;
+    private int numFollowers;
+
+
+    /**
+     * Number of agents in the urn, by leaderAID
+     */
+    private final int[] followers;
+
+
+    /**
+     * Is the agent with this AID still a candidate, and if so, its place in
+     * the urn
+     */
+    private final boolean[] candidate;
+    private final int[] candidateIndex;
+
+
+    /**
+     * Counters of the candidates, by AID. Meaningless for everyone else.
+     */
+    private final int[] conversions;
+    private final int[] metFollowers;
+
+
+    /**
+     * Number of agents that believe election is complete, following the real
+     * leader or anyone else
+     */
+    private int completeLeader;
+    private int completeOther;
+
+
+    /**
+     * Pairs of a candidate and one of its followers
+     */
+    private long candidatePairs;
+
+
+    /**
+     * Pairs of followers of the same leaderAID, neither of them the
+     * candidate. Such a tie changes nothing.
+     */
+    private long noOpFollowerPairs;
+
+
+    /*
+     * Effective pairs, by kind, as of the last call to effectivePairs()
+     */
+    private long pairsSpread;
+    private long pairsCounted;
+    private long pairsInfection;
+
+
+    private final RandomSource rs;
+    private final SimulatorRun simRun;
+
+    private final int termA;
+    private final int termB;
+    private final int numAgents;
+    private final int leaderAID;
+    private final long numPairs;
+    private final boolean flag_debug;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Create a time step, with every agent a candidate
+     *
+     * @param numAgents Number of agents, 2 or more
+     * @param termA Multiplicative factor
+     * @param termB Additive factor, 0 or more
+     * @param rs Random source for this run
+     */
+    public CountTimeStep(int numAgents, int termA, int termB,
+                                                   RandomSource rs) {
+        this.numAgents = numAgents;
+        this.termA = termA;
+        this.termB = termB;
+        this.rs = rs;
+
+        leaderAID = numAgents - 1;
+        numPairs = pairs(numAgents);
+
+        urn = new int[numAgents];
+        followers = new int[numAgents];
+        candidate = new boolean[numAgents];
+        candidateIndex = new int[numAgents];
+        conversions = new int[numAgents];
+        metFollowers = new int[numAgents];
+
+        // The real leader first
+        for (int i = 0; i < numAgents; i++) {
+            int agent = leaderAID - i;
+
+            urn[i] = (agent << 1) | 1;
+            followers[agent] = 1;
+            candidate[agent] = true;
+            candidateIndex[agent] = i;
+        }
+
+        numFollowers = numAgents;
+        noOpFollowerPairs = 0;
+        candidatePairs = 0;
+
+        step = 0;
+        infectionCounter = 1;
+        electionCompleteCounter = 0;
+        completeLeader = 0;
+        completeOther = 0;
+
+        flag_debug = Logger.getLevel().ordinal() <= Level.DEBUG.ordinal();
+
+        simRun = new SimulatorRun();
+        simRun.setNumAgents(numAgents);
+
+        Logger.debug("CountTimeStep INIT");
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * A single step of the simulation, always an interaction
+     */
+    @Override
+    public void step() {
+        long effective = effectivePairs();
+
+        if (effective > 0 && rs.nextDouble() * numPairs < effective) {
+            interact(effective);
+        }
+
+        step++;
+    }
+
+
+    /**
+     * Jump from one effective step to the next. The number of no-op steps in
+     * between is geometric, with the chance of a no-op step as it stands,
+     * since nothing changes until the effective one.
+     */
+    @Override
+    public void runUntilComplete(int maxSteps) {
+        while (step < maxSteps) {
+            long effective = effectivePairs();
+
+            // Nothing will ever change again
+            if (effective == 0) {
+                step = maxSteps;
+                break;
+            }
+
+            if (effective < numPairs) {
+                double skip = Math.floor(Math.log(1 - rs.nextDouble()) /
+                              Math.log1p(-(double) effective / numPairs));
+
+                if (skip >= maxSteps - step) {
+                    step = maxSteps;
+                    break;
+                }
+
+                step += (int) skip;
+            }
+
+            interact(effective);
+            step++;
+
+            if (flag_leaderElectionComplete && flag_allElectionComplete) {
+                Logger.info("STEP: {0}; Cutting off simulation - all " +
+                            "actions complete", step - 1);
+                break;
+            }
+        }
+    }
+
+
+    @Override
+    public void end() {
+        Logger.info("Simulation run COMPLETE");
+
+        simRun.setInfections(infectionCounter);
+        simRun.setElectionCompleteCount(electionCompleteCounter);
+        simRun.setInteractions(step);
+        simRun.setTraversals(0);
+
+        Logger.info("# of INFECTED agents: " + infectionCounter + "/" + numAgents);
+        Logger.info("# of agents that believe election is COMPLETE: " + electionCompleteCounter + "/" + numAgents);
+        Logger.info("# of agent INTERACTIONS: " + step);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public boolean isFlag_infectionComplete() {
+        return flag_infectionComplete;
+    }
+
+
+    @Override
+    public boolean isFlag_leaderElectionComplete() {
+        return flag_leaderElectionComplete;
+    }
+
+
+    @Override
+    public boolean isFlag_allElectionComplete() {
+        return flag_allElectionComplete;
+    }
+
+
+    @Override
+    public SimulatorRun getSimRun() {
+        return simRun;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Count the effective pairs, those whose interaction changes something:
+     *
+     *     - An agent that believes election is complete and one that doesn't
+     *       (spread)
+     *     - Two agents that believe election is complete, one following the
+     *       real leader, while not all do yet (counted)
+     *     - Two agents that don't, following different leaders (infection),
+     *       or a candidate and one of its followers
+     *
+     * @return Number of effective pairs
+     */
+    private long effectivePairs() {
+        int complete = completeLeader + completeOther;
+
+        pairsSpread = (long) complete * numFollowers;
+        pairsCounted = flag_allElectionComplete ? 0 :
+                       pairs(complete) - pairs(completeOther);
+        pairsInfection = pairs(numFollowers) - noOpFollowerPairs -
+                         candidatePairs;
+
+        return pairsSpread + pairsCounted + pairsInfection + candidatePairs;
+    }
+
+
+    /**
+     * Same as TimeStep.actionInteract(), on an effective pair drawn at random
+     *
+     * @param effective Number of effective pairs
+     */
+    private void interact(long effective) {
+        long r = Math.min((long) (rs.nextDouble() * effective), effective - 1);
+
+        if (r < pairsSpread) {
+            /*
+             * Spread the word that the election is complete
+             */
+            int index = rs.nextInt(numFollowers);
+            int leader = urn[index] >>> 1;
+            boolean ecLeader = rs.nextInt(completeLeader + completeOther) <
+                               completeLeader;
+
+            if (flag_debug) {
+                Logger.debug("Step: {0}; Spread to leader AID {1}", step,
+                             leader);
+            }
+
+            complete(index);
+
+            if (!flag_allElectionComplete &&
+                (leader == leaderAID || ecLeader)) {
+
+                electionCompleteCounter++;
+                flag_electionComplete();
+            }
+        }
+        else if ((r -= pairsSpread) < pairsCounted) {
+            if (flag_debug) {
+                Logger.debug("Step: {0}; Election complete counted", step);
+            }
+
+            electionCompleteCounter++;
+            flag_electionComplete();
+        }
+        else if ((r -= pairsCounted) < pairsInfection) {
+            infection(r);
+        }
+        else {
+            // Tie, a candidate and one of its followers
+            int agent = nextCandidatePair(r - pairsInfection);
+
+            if (flag_debug) {
+                Logger.debug("Step: {0}; Candidate {1} met follower", step,
+                             agent);
+            }
+
+            metFollowers[agent]++;
+            isElectionComplete(agent);
+        }
+    }
+
+
+    /**
+     * Pick two agents that follow different leaders, and have the one
+     * following the higher leaderAID infect the other. Either one of them
+     * follows the real leader, or neither does. The latter are drawn at
+     * random from the rest of the urn until their leaders differ.
+     *
+     * @param r Rank of the pair, between 0 and pairsInfection - 1
+     */
+    private void infection(long r) {
+        int leaderFollowers = followers[leaderAID];
+        int others = numFollowers - leaderFollowers;
+        int a, b;
+
+        if (r < (long) leaderFollowers * others) {
+            a = rs.nextInt(leaderFollowers);
+            b = leaderFollowers + rs.nextInt(others);
+        }
+        else {
+            do {
+                a = leaderFollowers + rs.nextInt(others);
+                b = leaderFollowers + rs.nextInt(others - 1);
+
+                if (b >= a) {
+                    b++;
+                }
+            }
+            while (urn[a] >>> 1 == urn[b] >>> 1);
+        }
+
+        if (urn[a] >>> 1 < urn[b] >>> 1) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        int infector = urn[a] >>> 1;
+        boolean infectorCandidate = (urn[a] & 1) != 0;
+
+        if (flag_debug) {
+            Logger.debug("Step: {0}; Leader AID {1} infects {2}", step,
+                         infector, urn[b] >>> 1);
+        }
+
+        leave(b);
+        join(infector);
+
+        if (infector == leaderAID) {
+            infectionCounter++;
+
+            if (!flag_infectionComplete && infectionCounter == numAgents) {
+                Logger.info("STEP: {0}; All agents INFECTED", step);
+                simRun.setInfectionCompleteStep(step);
+                simRun.setInfectionCompleteInteractions(step);
+
+                flag_infectionComplete = true;
+            }
+        }
+
+        // Possible leader
+        if (infectorCandidate) {
+            conversions[infector]++;
+            isElectionComplete(infector);
+        }
+    }
+
+
+    /**
+     * Pick a candidate that meets one of its followers. The candidate of the
+     * real leader, or else one drawn by a follower at random from the rest of
+     * the urn, until that follower is not a candidate but has one.
+     *
+     * @param r Rank of the pair, between 0 and candidatePairs - 1
+     * @return AID of the candidate
+     */
+    private int nextCandidatePair(long r) {
+        int leaderFollowers = followers[leaderAID];
+
+        if (candidate[leaderAID] && r < leaderFollowers - 1) {
+            return leaderAID;
+        }
+
+        int entry;
+
+        do {
+            entry = urn[leaderFollowers +
+                        rs.nextInt(numFollowers - leaderFollowers)];
+        }
+        while ((entry & 1) != 0 || !candidate[entry >>> 1]);
+
+        return entry >>> 1;
+    }
+
+
+    /**
+     * The agent at index of the urn leaves it. The last of the followers of
+     * the real leader, then the last of the urn fill the gap.
+     */
+    private void leave(int index) {
+        int entry = urn[index];
+        int leader = entry >>> 1;
+        int others = followers[leader] - (candidate[leader] ? 1 : 0);
+
+        if ((entry & 1) != 0) {
+            candidate[leader] = false;
+            candidatePairs -= others;
+        }
+        else {
+            noOpFollowerPairs -= others - 1;
+
+            if (candidate[leader]) {
+                candidatePairs--;
+            }
+        }
+
+        if (leader == leaderAID) {
+            int last = followers[leaderAID] - 1;
+
+            put(index, urn[last]);
+            index = last;
+        }
+
+        put(index, urn[--numFollowers]);
+        followers[leader]--;
+    }
+
+
+    /**
+     * An agent, not a candidate, joins the urn as a follower of leader
+     */
+    private void join(int leader) {
+        noOpFollowerPairs += followers[leader] - (candidate[leader] ? 1 : 0);
+
+        if (candidate[leader]) {
+            candidatePairs++;
+        }
+
+        int index = numFollowers++;
+
+        if (leader == leaderAID) {
+            int first = followers[leaderAID];
+
+            if (first < index) {
+                put(index, urn[first]);
+                index = first;
+            }
+        }
+
+        urn[index] = leader << 1;
+        followers[leader]++;
+    }
+
+
+    /**
+     * Set an entry of the urn, keeping track of where candidates are
+     */
+    private void put(int index, int entry) {
+        urn[index] = entry;
+
+        if ((entry & 1) != 0) {
+            candidateIndex[entry >>> 1] = index;
+        }
+    }
+
+
+    /**
+     * The agent at index of the urn, which didn't, now believes election is
+     * complete
+     */
+    private void complete(int index) {
+        int leader = urn[index] >>> 1;
+
+        leave(index);
+
+        if (leader == leaderAID) {
+            completeLeader++;
+        }
+        else {
+            completeOther++;
+        }
+    }
+
+
+    /**
+     * Same as TimeStep.isElectionComplete(), for a candidate
+     */
+    private void isElectionComplete(int agent) {
+        if ((termB + (termA * conversions[agent])) < metFollowers[agent]) {
+            complete(candidateIndex[agent]);
+
+            Logger.info("STEP: {0}; Agent believes election is complete and " +
+                        "is the leader \n\t # of interactions: {1}; AID: {2}",
+                        step, step, agent);
+
+            // Is this the real leader that believes election is complete?
+            if (agent == leaderAID) {
+                simRun.setLeaderElectionCompleteStep(step);
+                simRun.setLeaderElectionCompleteInteractions(step);
+
+                electionCompleteCounter++;
+                flag_leaderElectionComplete = true;
+
+                flag_electionComplete();
+
+                if (!flag_infectionComplete) {
+                    Logger.warn("Leader delcared election complete EARLY");
+                }
+            }
+        }
+    }
+
+
+    private void flag_electionComplete() {
+        if (!flag_allElectionComplete && electionCompleteCounter == numAgents) {
+
+            Logger.info("STEP: {0}; All agents believe election is complete", step);
+            simRun.setAllElectionCompleteStep(step);
+            simRun.setAllElectionCompleteInteractions(step);
+
+            flag_allElectionComplete = true;
+        }
+    }
+
+
+    /**
+     * Number of unordered pairs among n agents
+     */
+    private static long pairs(long n) {
+        return n * (n - 1) / 2;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * CsrTopology.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Node;
+
+
+/**
+ * Topology in compressed sparse row (CSR) form. The leaving edges of node i
+ * are entries offsets[i] to offsets[i + 1] - 1 of two flat arrays, one with
+ * the index of the neighbour at the other end, the other with the index of
+ * the edge in the ExtendedGraph. About 8 bytes per leaving edge and 4 per
+ * node, against the hundreds a GraphStream node or edge takes.
+ *
+ * Built once from an ExtendedGraph, after that GraphStream is not needed to
+ * run on it.
+ *
+ */
+public class CsrTopology extends Topology {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private final int numNodes;
+
+
+    /**
+     * Start of the leaving edges of each node, numNodes + 1 entries
+     */
+    private final int[] offsets;
+
+
+    /**
+     * Neighbour at the other end of each leaving edge
+     */
+    private final int[] neighbours;
+
+
+    /**
+     * Index in the ExtendedGraph of each leaving edge
+     */
+    private final int[] edges;
+
+
+    private final boolean hasDeadEnd;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Build the topology of the graph as it is now. Later changes to the graph
+     * are not picked up.
+     *
+     * @param g Graph
+     */
+    public CsrTopology(ExtendedGraph g) {
+        numNodes = g.getNodeCount();
+        offsets = new int[numNodes + 1];
+
+        for (int i = 0; i < numNodes; i++) {
+            offsets[i + 1] = offsets[i] + g.getNode(i).getOutDegree();
+        }
+
+        neighbours = new int[offsets[numNodes]];
+        edges = new int[offsets[numNodes]];
+
+        boolean deadEnd = false;
+
+        for (int i = 0; i < numNodes; i++) {
+            Node n = g.getNode(i);
+            int outDegree = n.getOutDegree();
+
+            // Same order as getLeavingEdge(k), so runs make the same choices
+            for (int k = 0; k < outDegree; k++) {
+                Edge e = n.getLeavingEdge(k);
+                neighbours[offsets[i] + k] = e.getOpposite(n).getIndex();
+                edges[offsets[i] + k] = e.getIndex();
+            }
+
+            if (outDegree == 0) {
+                deadEnd = true;
+            }
+        }
+
+        hasDeadEnd = deadEnd;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    @Override
+    public int numNodes() {
+        return numNodes;
+    }
+
+
+    @Override
+    public int outDegree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+
+    @Override
+    public int neighbour(int node, int k) {
+        return neighbours[offsets[node] + k];
+    }
+
+
+    @Override
+    public int edge(int node, int k) {
+        return edges[offsets[node] + k];
+    }
+
+
+    @Override
+    public boolean hasDeadEnd() {
+        return hasDeadEnd;
+    }
+}
@@ -22,11 +22,12 @@
 package sim;
 
 import java.util.HashMap;
-import java.util.Iterator;
 
 import org.graphstream.algorithm.ConnectedComponents;
 import org.graphstream.graph.Edge;
 import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AbstractEdge;
+import org.graphstream.graph.implementations.AbstractNode;
 import org.graphstream.graph.implementations.SingleGraph;
 import org.pmw.tinylog.Logger;
 
@@ -41,6 +42,11 @@ import com.google.common.collect.Range;
  * convenience and simplicity. No need to continually call set and get
  * attribute with casts from Graph class.
  *
+ * Runs do not go through GraphStream. They run on a Topology built from this
+ * graph and a Population, see getTopology() and getPopulation(). A generated
+ * graph may have no nodes or edges at all, only an ImplicitTopology. Use
+ * getNumNodes(), getNodeIndex() and getNodeId() for what works on both.
+ *
  */
 public class ExtendedGraph extends SingleGraph {
 
@@ -76,28 +82,36 @@ public class ExtendedGraph extends SingleGraph {
 
 
     /**
-     * ID of the node select by RANDOM_SINGLE agent distribution. This is for
-     * internal reference. See AgentDistribution class for more.
+     * Does this graph have a dead end?
      */
-    private String RANDOM_SINGLE_nodeID;
+    private boolean hasDeadEnd;
 
 
     /**
-     * ID of the node that all agents have hit a dead end in.
+     * Probabilities of all possible actions
      */
-    private String deadEnd_nodeID;
+    private HashMap<Integer, Range<Double>> actionProbabilitySpread;
 
 
     /**
-     * Does this graph have a dead end?
+     * Structure of this graph for runs. Null when not built yet or out of
+     * date, it is then (re)built on demand.
      */
-    private boolean hasDeadEnd;
+    private Topology topology;
 
 
     /**
-     * Probabilities of all possible actions
+     * Topology computed from the parameters of a generated graph, in place of
+     * its nodes and edges. Null if the graph has nodes and edges.
      */
-    private HashMap<Integer, Range<Double>> actionProbabilitySpread;
+    private ImplicitTopology implicitTopology;
+
+
+    /**
+     * Agents of this graph's nodes, what ExtendedNode reads and writes.
+     * Created (or reset) by reset().
+     */
+    private Population population;
 
 
     ///////////////////////////////////////////////////////////////////////////
@@ -137,16 +151,7 @@ public class ExtendedGraph extends SingleGraph {
      * @return True if the graph has one or more dead end(s), false otherwise
      */
     public boolean hasDeadEnd() {
-        hasDeadEnd = false;
-
-        for (Node n : this.getNodeSet()) {
-
-            if (n.getOutDegree() == 0) {
-                hasDeadEnd = true;
-                return hasDeadEnd;
-            }
-        }
-
+        hasDeadEnd = getTopology().hasDeadEnd();
         return hasDeadEnd;
     }
 
@@ -157,6 +162,11 @@ public class ExtendedGraph extends SingleGraph {
      * @return True if the graph is connected, false otherwise
      */
     public boolean isConnected() {
+        // Generators only make connected graphs
+        if (implicitTopology != null) {
+            return true;
+        }
+
         ConnectedComponents cc = new ConnectedComponents();
         cc.init(this);
 
@@ -195,15 +205,7 @@ public class ExtendedGraph extends SingleGraph {
      * @return Infection count
      */
     protected int infectionCount() {
-        int count = 0;
-        Iterator<ExtendedNode> it = this.getNodeIterator();
-
-        while (it.hasNext()) {
-            ExtendedNode n = it.next();
-            count += n.infectionCount();
-        }
-
-        return count;
+        return population.infectionCount();
     }
 
 
@@ -214,137 +216,230 @@ public class ExtendedGraph extends SingleGraph {
      * @return Count of agents that believe election is complete
      */
     protected int electionCompleteCount() {
-        int count = 0;
-        Iterator<ExtendedNode> it = this.getNodeIterator();
+        return population.electionCompleteCount();
+    }
 
-        while (it.hasNext()) {
-            ExtendedNode n = it.next();
-            count += n.electionCompleteCount();
+
+    /**
+     * Copy the structure and simulation settings of this graph. Nodes and
+     * edges are added in index order, so they keep their indices, and the
+     * order of each node's leaving edges. A run on the copy thus makes the
+     * same random choices as it would on this graph. Agents are not copied,
+     * reset() and an agent distribution take care of that.
+     *
+     * @return Independent copy of this graph
+     */
+    protected ExtendedGraph copy() {
+        ExtendedGraph copy = new ExtendedGraph(getId());
+
+        for (int i = 0; i < getNodeCount(); i++) {
+            copy.addNode(getNode(i).getId());
+        }
+
+        for (int i = 0; i < getEdgeCount(); i++) {
+            Edge e = getEdge(i);
+            copy.addEdge(e.getId(), e.getSourceNode().getId(),
+                                    e.getTargetNode().getId(),
+                                    e.isDirected());
         }
 
-        return count;
+        copy.numAgents = numAgents;
+        copy.nodeSelection = nodeSelection;
+        copy.agentDistribution = agentDistribution;
+        copy.SINGLE_nodeID = SINGLE_nodeID;
+        copy.hasDeadEnd = hasDeadEnd;
+        copy.actionProbabilitySpread = actionProbabilitySpread;
+        copy.implicitTopology = implicitTopology;
+        copy.topology = implicitTopology;
+
+        return copy;
     }
 
 
     /**
-     * Returns the probability spread across the graph. This is used for making
-     * for a weighted random node selection.
+     * Clear the graph (reset it). Its population is emptied, and sized for
+     * the current number of agents.
      *
-     *
-     * @return HashMap with each node's ID and it's probability given as a
-     *         Range object
      */
-    protected HashMap<String, Range<Double>> agentProbabilitySpread() {
-        double offset = 0.0;
-        HashMap<String, Range<Double>> map = new HashMap<String, Range<Double>>();
+    protected void reset() {
+        // Also picks up any change to the structure of the graph
+        Topology t = getTopology();
+
+        if (population == null || population.getTopology() != t) {
+            population = new Population(t);
+        }
+
+        population.setNumAgents(numAgents);
+        population.reset();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS - GRAPH CALLBACKS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /*
+     * Any change to the structure makes the topology out of date
+     */
 
 
-        Iterator<ExtendedNode> it = this.getNodeIterator();
-        while (it.hasNext()) {
-            ExtendedNode n = it.next();
+    @Override
+    protected void addNodeCallback(AbstractNode node) {
+        super.addNodeCallback(node);
+        structureChanged();
+    }
 
-            // Probability of the node being selected
-            double p = (double) n.getAgentCount() / (double) numAgents;
 
-            // Upper bound for the range of the this node
-            double upper = offset + p;
+    @Override
+    protected void addEdgeCallback(AbstractEdge edge) {
+        super.addEdgeCallback(edge);
+        structureChanged();
+    }
 
-            // https://code.google.com/p/guava-libraries/wiki/RangesExplained
-            map.put(n.getId(), Range.closedOpen(offset, upper));
 
-//            Logger.trace("{0}; Probability {1}; Offset {2}; Upper {3}", n,
-//                                                                        p,
-//                                                                        offset,
-//                                                                        upper);
+    @Override
+    protected void removeNodeCallback(AbstractNode node) {
+        super.removeNodeCallback(node);
+        structureChanged();
+    }
+
+
+    @Override
+    protected void removeEdgeCallback(AbstractEdge edge) {
+        super.removeEdgeCallback(edge);
+        structureChanged();
+    }
 
-            offset = upper;
-        }
 
-        return map;
+    @Override
+    protected void clearCallback() {
+        super.clearCallback();
+        structureChanged();
     }
 
 
     /**
-     * Check if all agents are in a single node which has an out degree of 0,
-     * a dead end. Thus, no agent can escape. If this is the case, traversal
-     * actions cannot be attempted.
-     *
-     * @return True if the graph has hit a dead end, false otherwise
+     * The graph now has nodes and edges of its own, any implicit topology no
+     * longer stands for it
      */
-    protected boolean agentDeadEnd() {
-        Iterator<ExtendedNode> it = this.getNodeIterator();
+    private void structureChanged() {
+        topology = null;
+        implicitTopology = null;
+    }
 
-        while (it.hasNext()) {
-            ExtendedNode n = it.next();
 
-            if (n.getAgentCount() == numAgents && n.getOutDegree() == 0) {
-                Logger.warn("ALL AGENTS HAVE HIT A DEAD END - NO MORE " +
-                            " TRAVERSE ACTION");
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
 
-                deadEnd_nodeID = n.getId();
-                return true;
-            }
-        }
 
-        return false;
+    /**
+     * The number of agents in the whole graph. This is constant throughout the
+     * simulation.
+     *
+     * @return Number of agents in the graph
+     */
+    protected int getNumAgents() {
+        return numAgents;
     }
 
 
     /**
-     * How many agents are currently in the graph? This is used to check if any
-     * agents have fallen off the graph.
+     * Structure of this graph for runs, built on first use after a change.
+     * Runs on different threads share it.
      *
-     * @return Number of agents across the graph currently
+     * @return Topology
      */
-    protected int checkNumAgents() {
-        int count = 0;
-        Iterator<ExtendedNode> it = this.getNodeIterator();
+    protected Topology getTopology() {
+        if (topology == null) {
+            topology = new CsrTopology(this);
+        }
 
-        while (it.hasNext()) {
-            ExtendedNode n = it.next();
-            count += n.getAgentCount();
+        return topology;
+    }
+
+
+    /**
+     * Number of nodes, whether the graph has them or only an implicit
+     * topology
+     *
+     * @return Number of nodes
+     */
+    protected int getNumNodes() {
+        if (implicitTopology != null) {
+            return implicitTopology.numNodes();
         }
 
-        return count;
+        return getNodeCount();
     }
 
 
     /**
-     * Clear the graph (reset it).
+     * Index of the node with the given ID, whether the graph has it or only
+     * an implicit topology
      *
+     * @param id ID of the node
+     * @return Index of the node, -1 if there is no such node
      */
-    protected void reset() {
-        Iterator<ExtendedNode> it = this.getNodeIterator();
+    protected int getNodeIndex(String id) {
+        if (implicitTopology != null) {
+            return implicitTopology.nodeIndex(id);
+        }
+
+        Node n = getNode(id);
+        return n == null ? -1 : n.getIndex();
+    }
+
 
-        while (it.hasNext()) {
-            it.next().reset();
+    /**
+     * ID of a node, whether the graph has it or only an implicit topology
+     *
+     * @param index Index of the node
+     * @return ID of the node
+     */
+    protected String getNodeId(int index) {
+        if (implicitTopology != null) {
+            return implicitTopology.nodeId(index);
         }
+
+        return getNode(index).getId();
     }
 
 
-    ///////////////////////////////////////////////////////////////////////////
-    // PROTECTED METHODS - GETTERS
-    ///////////////////////////////////////////////////////////////////////////
+    /**
+     * Does the graph only have an implicit topology, no nodes and edges?
+     *
+     * @return True if the topology is implicit, false otherwise
+     */
+    protected boolean isImplicit() {
+        return implicitTopology != null;
+    }
 
 
     /**
-     * The number of agents in the whole graph. This is constant throughout the
-     * simulation.
+     * Agents of this graph's nodes
      *
-     * @return Number of agents in the graph
+     * @return Population, null until reset()
      */
-    protected int getNumAgents() {
-        return numAgents;
+    protected Population getPopulation() {
+        return population;
     }
 
 
-    protected String getSINGLE_nodeID() {
-        return SINGLE_nodeID;
+    /**
+     * State of all the agents in the graph. Nodes hold slots into it, a slot
+     * is also the AID of the agent.
+     *
+     * @return Agent store
+     */
+    protected AgentStore getAgentStore() {
+        return population.getAgentStore();
     }
 
 
-    protected String getRANDOM_SINGLE_nodeID() {
-        return RANDOM_SINGLE_nodeID;
+    protected String getSINGLE_nodeID() {
+        return SINGLE_nodeID;
     }
 
 
@@ -363,8 +458,56 @@ public class ExtendedGraph extends SingleGraph {
     }
 
 
-    protected String getDeadEnd_nodeID() {
-        return deadEnd_nodeID;
+    /**
+     * Number of agents in each node, by node index
+     *
+     * @return Agent counts
+     */
+    protected FenwickTree getAgentCounts() {
+        return population.getAgentCounts();
+    }
+
+
+    /**
+     * Number of agents in each node that can serve an interact action, by
+     * node index. Nodes that can't serve it have a count of 0.
+     *
+     * @return Agent counts
+     */
+    protected FenwickTree getInteractCounts() {
+        return population.getInteractCounts();
+    }
+
+
+    /**
+     * Number of agents in each node that can serve a traverse action, by
+     * node index. Nodes that can't serve it have a count of 0.
+     *
+     * @return Agent counts
+     */
+    protected FenwickTree getTraverseCounts() {
+        return population.getTraverseCounts();
+    }
+
+
+    /**
+     * Nodes that can serve an interact action. That is, have 2 or more agents.
+     *
+     * @return Set of node indices
+     */
+    protected NodeIndexSet getInteractNodes() {
+        return population.getInteractNodes();
+    }
+
+
+    /**
+     * Nodes that can serve a traverse action. That is, have 1 or more agents
+     * and an out degree of 1 or more.
+     *
+     * @return Set of node indices
+     */
+    protected NodeIndexSet getTraverseNodes() {
+        return population.getTraverseNodes();
     }
 
 
@@ -388,11 +531,6 @@ public class ExtendedGraph extends SingleGraph {
     }
 
 
-    protected void setRANDOM_SINGLE_nodeID(String rANDOM_SINGLE_nodeID) {
-        RANDOM_SINGLE_nodeID = rANDOM_SINGLE_nodeID;
-    }
-
-
     protected void setAgentDistribution(Distribution agentDistribution) {
         this.agentDistribution = agentDistribution;
     }
@@ -403,6 +541,18 @@ public class ExtendedGraph extends SingleGraph {
     }
 
 
+    /**
+     * Stand in for the nodes and edges of a generated graph, which this graph
+     * must not have. Adding any later drops the implicit topology.
+     *
+     * @param implicitTopology Topology of the generated graph
+     */
+    protected void setImplicitTopology(ImplicitTopology implicitTopology) {
+        this.implicitTopology = implicitTopology;
+        topology = implicitTopology;
+    }
+
+
     protected void setActionProbabilitySpread(
             HashMap<Integer, Range<Double>> agentProbabilitySpread) {
         this.actionProbabilitySpread = agentProbabilitySpread;
@@ -21,14 +21,14 @@
 
 package sim;
 
-import java.util.ArrayList;
-
 import org.graphstream.graph.implementations.AbstractGraph;
 import org.graphstream.graph.implementations.SingleNode;
 
 
 /**
- * Node used with ExtendedGraph
+ * Node used with ExtendedGraph. Its agents are held by the graph's
+ * Population, under the index of this node. The methods here are a view of
+ * them, for visualization and convenience, runs use the Population directly.
  *
  */
 public class ExtendedNode extends SingleNode {
@@ -45,12 +45,6 @@ public class ExtendedNode extends SingleNode {
     private ExtendedGraph graph;
 
 
-    /**
-     * List of agents currently in this node
-     */
-    private ArrayList<Agent> agents;
-
-
     ///////////////////////////////////////////////////////////////////////////
     // CONSTRUCTOR
     ///////////////////////////////////////////////////////////////////////////
@@ -62,9 +56,6 @@ public class ExtendedNode extends SingleNode {
         // Maintain a casted reference to the graph which this node belongs to.
         // Same as: (ExtendedGraph) super.graph
         this.graph = (ExtendedGraph) graph;
-
-        // Set initial cap
-        agents = new ArrayList<Agent>(this.graph.getNumAgents());
     }
 
 
@@ -79,16 +70,7 @@ public class ExtendedNode extends SingleNode {
      * @return Number of agents infected
      */
     public int infectionCount() {
-        int count = 0;
-        int leaderAID = graph.getNumAgents() - 1;
-
-        for (Agent a : agents) {
-            if (a.getLeaderAID() == leaderAID) {
-                count++;
-            }
-        }
-
-        return count;
+        return graph.getPopulation().infectionCount(getIndex());
     }
 
 
@@ -99,15 +81,7 @@ public class ExtendedNode extends SingleNode {
      * @return Number of agents that believe election is complete
      */
     public int electionCompleteCount() {
-        int count = 0;
-
-        for (Agent a : agents) {
-            if (a.isElectionComplete()) {
-                count++;
-            }
-        }
-
-        return count;
+        return graph.getPopulation().electionCompleteCount(getIndex());
     }
 
 
@@ -117,23 +91,7 @@ public class ExtendedNode extends SingleNode {
      * @return True if it does contain the leader, false otherwise
      */
     public boolean containsLeader() {
-        int leaderAID = graph.getNumAgents() - 1;
-
-        for (Agent a : agents) {
-            if (a.getAID() == leaderAID) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-
-    /**
-     * Clear the node (reset). This is done before a new run of a simulation.
-     */
-    public void reset() {
-        agents = new ArrayList<Agent>(graph.getNumAgents());
+        return graph.getPopulation().containsLeader(getIndex());
     }
 
 
@@ -150,35 +108,19 @@ public class ExtendedNode extends SingleNode {
     ///////////////////////////////////////////////////////////////////////////
 
 
-    public Agent getAgent(int index) {
-        return agents.get(index);
-    }
-
-
     /**
-     * Get Agent with given AID.
+     * Get the agent at the given index of this node
      *
-     * @param aid Agent in question.
-     * @return The Agent if found, null otherwise.
+     * @param index Index between 0 and getAgentCount() - 1
+     * @return Slot of the agent, which is also its AID
      */
-    public Agent getAgentWithID(int aid) {
-        for (Agent a : agents) {
-            if (a.getLeaderAID() == aid) {
-                return a;
-            }
-        }
-
-        return null;
+    public int getAgent(int index) {
+        return graph.getPopulation().getAgent(getIndex(), index);
     }
 
 
     public int getAgentCount() {
-        return agents.size();
-    }
-
-
-    public ArrayList<Agent> getAgents() {
-        return agents;
+        return graph.getPopulation().getAgentCount(getIndex());
     }
 
 
@@ -190,59 +132,33 @@ public class ExtendedNode extends SingleNode {
     /**
      * Add an agent to this node
      *
-     * @param agent Agent to be added
-     * @return True if the agent was added successfully to the node, false
-     * 		   otherwise
+     * @param slot Slot of the agent to be added
      */
-    public Boolean addAgent(Agent agent) {
-        return agents.add(agent);
+    public void addAgent(int slot) {
+        graph.getPopulation().addAgent(getIndex(), slot);
     }
 
 
     /**
-     * Add a list of agents to the node. This is an additive operation, not to
-     * be confused with the setAgents() method
+     * Add a range of agents to the node. This is an additive operation.
      *
-     *
-     * @param agentList List of agents to be added
-     * @return True if the agents were added successfully to the node, false
-     * 		   otherwise
+     * @param slots Slots of the agents
+     * @param from First slot to add, index in slots (inclusive)
+     * @param to Last slot to add, index in slots (exclusive)
      */
-    public Boolean addAgents(ArrayList<Agent> agentList) {
-        return agents.addAll(agentList);
+    public void addAgents(int[] slots, int from, int to) {
+        graph.getPopulation().addAgents(getIndex(), slots, from, to);
     }
 
 
     /**
-     * Remove an agent from the node
+     * Remove an agent from the node. O(1), the last agent takes the place of
+     * the removed one, so the index of that agent changes.
      *
      * @param index Index of the agent to be removed
-     * @return Agent Returns the removed agent
-     */
-    public Agent removeAgent(int index) {
-        return agents.remove(index);
-    }
-
-
-    /**
-     * Remove an agent from the node
-     *
-     * @param agent Agent to be removed
-     * @return True if the agent was removed successfully from the node, false
-     * 		   otherwise
-     */
-    public Boolean removeAgent(Agent agent) {
-        return agents.remove(agent);
-    }
-
-
-    /**
-     * Set the list of agents that this node contains, as in replace completely.
-     * Not to be confused with the addAgents() method
-     *
-     * @param agents List of agents to be set
+     * @return Slot of the removed agent
      */
-    public void setAgents(ArrayList<Agent> agents) {
-        this.agents = agents;
+    public int removeAgent(int index) {
+        return graph.getPopulation().removeAgent(getIndex(), index);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+/*
+ * FenwickTree.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+
+/**
+ * Fenwick tree (binary indexed tree) of non-negative weights. Used for
+ * weighted random selection, for example picking a node with probability in
+ * proportion to its number of agents. Updates and lookups are O(log n) and
+ * allocation free.
+ *
+ * Indices are 0 based, like the node indices of a GraphStream graph.
+ */
+public class FenwickTree {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * The tree, 1 based internally
+     */
+    private final long[] tree;
+
+
+    private final int size;
+
+
+    /**
+     * Highest power of two <= size. Starting step of find()
+     */
+    private final int topStep;
+
+
+    /**
+     * Sum of all weights
+     */
+    private long total;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Create a tree with all weights 0
+     *
+     * @param size Number of weights
+     */
+    public FenwickTree(int size) {
+        this.size = size;
+        tree = new long[size + 1];
+        topStep = size == 0 ? 0 : Integer.highestOneBit(size);
+        total = 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Add to the weight at index
+     *
+     * @param index Index of the weight
+     * @param delta Amount to add, may be negative
+     */
+    public void add(int index, long delta) {
+        total += delta;
+
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+
+    /**
+     * Sum of the weights from 0 up to and including index
+     *
+     * @param index Last index of the sum
+     * @return Prefix sum
+     */
+    public long prefixSum(int index) {
+        long sum = 0;
+
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+
+        return sum;
+    }
+
+
+    /**
+     * Weight at index
+     *
+     * @param index Index of the weight
+     * @return Weight
+     */
+    public long get(int index) {
+        return prefixSum(index) - prefixSum(index - 1);
+    }
+
+
+    /**
+     * Find the index whose weight covers r, if all weights were laid end to
+     * end. That is, the smallest index such that prefixSum(index) > r. With r
+     * uniform in [0, total()), an index is returned with probability
+     * weight / total().
+     *
+     * @param r Value between 0 (inclusive) and total() (exclusive)
+     * @return Index
+     */
+    public int find(long r) {
+        int pos = 0;
+
+        for (int step = topStep; step > 0; step >>= 1) {
+            int next = pos + step;
+
+            if (next <= size && tree[next] <= r) {
+                pos = next;
+                r -= tree[next];
+            }
+        }
+
+        return pos;
+    }
+
+
+    /**
+     * Set all weights to 0
+     */
+    public void clear() {
+        for (int i = 0; i < tree.length; i++) {
+            tree[i] = 0;
+        }
+
+        total = 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Sum of all weights
+     *
+     * @return Total weight
+     */
+    public long total() {
+        return total;
+    }
+
+
+    public int size() {
+        return size;
+    }
+}
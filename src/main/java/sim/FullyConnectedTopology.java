@@ -0,0 +1,105 @@
+/*
+ * FullyConnectedTopology.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+
+/**
+ * Implicit topology of a fully connected graph, as FullGenerator makes it
+ * with edges that are not randomly directed. If undirected, every node is
+ * linked to every other, in the same order as in the generated graph. If
+ * directed, edges go from each node to all nodes with a lower index, so node
+ * 0 is a dead end.
+ *
+ */
+public class FullyConnectedTopology extends ImplicitTopology {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private final int numNodes;
+    private final boolean directed;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * @param numNodes Number of nodes
+     * @param directed Are the edges directed?
+     */
+    public FullyConnectedTopology(int numNodes, boolean directed) {
+        this.numNodes = numNodes;
+        this.directed = directed;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    @Override
+    public int numNodes() {
+        return numNodes;
+    }
+
+
+    @Override
+    public int outDegree(int node) {
+        return directed ? node : numNodes - 1;
+    }
+
+
+    @Override
+    public int neighbour(int node, int k) {
+        // Every other node, skipping itself
+        if (!directed && k >= node) {
+            return k + 1;
+        }
+
+        return k;
+    }
+
+
+    @Override
+    public boolean hasDeadEnd() {
+        return outDegree(0) == 0;
+    }
+
+
+    @Override
+    public int nodeIndex(String id) {
+        return parseIndex(id, numNodes);
+    }
+
+
+    @Override
+    public String nodeId(int node) {
+        return Integer.toString(node);
+    }
+}
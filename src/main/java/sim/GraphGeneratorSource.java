@@ -55,6 +55,19 @@ public class GraphGeneratorSource {
     private BaseGenerator generator;
 
 
+    /**
+     * Topology of the graph the generator would make, null if it can't be
+     * computed. Used instead of the generator when visualization is off.
+     */
+    private ImplicitTopology implicitTopology;
+
+
+    /**
+     * Graphs smaller than this are always generated, nothing to gain
+     */
+    private static final int MIN_IMPLICIT_EVENTS = 3;
+
+
     /**
      * How many nextEvents() should be called? This basically means how many
      * nodes the graph should have, but ultimately depends on the generator in
@@ -69,7 +82,10 @@ public class GraphGeneratorSource {
     private boolean curvedEdges;
 
 
-    private static final GraphGeneratorSource INSTANCE = new GraphGeneratorSource();
+    /**
+     * Simulation this generator belongs to
+     */
+    private final SimulatorContext ctx;
 
 
     ///////////////////////////////////////////////////////////////////////////
@@ -77,7 +93,8 @@ public class GraphGeneratorSource {
     ///////////////////////////////////////////////////////////////////////////
 
 
-    private GraphGeneratorSource() {
+    public GraphGeneratorSource(SimulatorContext ctx) {
+        this.ctx = ctx;
     }
 
 
@@ -89,12 +106,17 @@ public class GraphGeneratorSource {
     public void graphGrid(int events, boolean directed, boolean crossLinks) {
         this.events = events;
         generator = new GridGenerator(crossLinks, false, false, directed);
+        implicitTopology = new GridTopology(events, directed, crossLinks);
     }
 
 
     public void graphFullyConnected(int events, boolean directed, boolean randomlyDirectedEdges) {
         this.events = events;
         generator = new FullGenerator(directed, randomlyDirectedEdges);
+
+        // Random edge directions would have to be stored
+        implicitTopology = randomlyDirectedEdges ?
+                           null : new FullyConnectedTopology(events, directed);
     }
 
 
@@ -107,15 +129,44 @@ public class GraphGeneratorSource {
         }
 
         generator = new ChainGenerator(directed, doublyLinked, loopBack);
+        implicitTopology = new ChainTopology(events, directed, doublyLinked,
+                                                               loopBack);
     }
 
 
+    /**
+     * Generate the graph. If it isn't visualized, and its topology can be
+     * computed, the graph only gets that implicit topology, no nodes or
+     * edges.
+     *
+     * @param g Empty graph
+     */
     public void generateGraph(ExtendedGraph g) {
+        if (implicitTopology != null && events >= MIN_IMPLICIT_EVENTS &&
+            ctx.getGraphVis() == null) {
+            g.setImplicitTopology(implicitTopology);
+            Logger.info("Graph generation - IMPLICIT, {0} nodes",
+                        implicitTopology.numNodes());
+            return;
+        }
+
+        generateNodesAndEdges(g);
+    }
+
+
+    /**
+     * Generate the nodes and edges of the graph with the GraphStream
+     * generator, even if an implicit topology would do
+     *
+     * @param g Empty graph
+     */
+    public void generateNodesAndEdges(ExtendedGraph g) {
         Logger.info("Graph generation - BEGIN");
 
-        // Must be called here otherwise graph colors go B&W for some reason
-        if (curvedEdges) {
-            GraphVis.getInstance().curvedEdges();
+        // Must be called here otherwise graph colors go B&W for some reason.
+        // Only matters if the graph is being visualized.
+        if (curvedEdges && ctx.getGraphVis() != null) {
+            ctx.getGraphVis().curvedEdges();
         }
 
         generator.addSink(g);
@@ -127,7 +178,7 @@ public class GraphGeneratorSource {
         // What an event means depends on the generator in question
         for (int i = 0; i < events; i++) {
             generator.nextEvents();
-            Sleep.sleep();   // To help the user see the graph being made
+            ctx.sleep();   // To help the user see the graph being made
         }
 
         generator.end();
@@ -135,14 +186,4 @@ public class GraphGeneratorSource {
 
         Logger.info("Graph generation - COMPLETE");
     }
-
-
-    ///////////////////////////////////////////////////////////////////////////
-    // PUBLIC METHODS - GETTERS
-    ///////////////////////////////////////////////////////////////////////////
-
-
-    public static GraphGeneratorSource getInstance() {
-        return INSTANCE;
-    }
 }
@@ -28,9 +28,16 @@ import java.awt.DisplayMode;
 import java.awt.Font;
 import java.awt.GraphicsEnvironment;
 import java.awt.GridLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import javax.swing.BorderFactory;
 import javax.swing.JFrame;
@@ -49,6 +56,12 @@ import org.pmw.tinylog.Logger;
 /**
  * Handles everything related to graph visualization.
  *
+ * By default every update is drawn as it happens, on the simulation thread,
+ * which then sleeps. With a frame rate set (see SimulatorContext), updates are
+ * only published by the simulation thread, and a thread of the view draws them
+ * at that rate. Many updates to a node between two frames are drawn once, and
+ * the simulation runs at full speed.
+ *
  * NOTE: not using GraphStream event based updates. This is a TODO list item.
  */
 public class GraphVis {
@@ -60,15 +73,15 @@ public class GraphVis {
 
 
     /**
-     * Singleton instance of this class
+     * Reference to the graph
      */
-    private static final GraphVis INSTANCE = new GraphVis();
+    private ExtendedGraph g;
 
 
     /**
-     * Reference to the graph
+     * Simulation this visualization belongs to
      */
-    private ExtendedGraph g;
+    private final SimulatorContext ctx;
 
 
     /*
@@ -104,12 +117,44 @@ public class GraphVis {
     private static final Font font = new Font("Courier New", Font.BOLD, 20);
 
 
+    /**
+     * Draws the published updates at the frame rate, null if every update is
+     * drawn as it happens
+     */
+    private volatile ScheduledExecutorService renderer;
+
+
+    /**
+     * Node and edge state, as last published by the simulation thread. A new
+     * one is made if the graph changes size.
+     */
+    private volatile Frame frame;
+
+
+    /*
+     * Label state, as last published by the simulation thread
+     */
+    private volatile int infections;
+    private volatile int believers;
+    private volatile int numAgents;
+    private volatile boolean leaderBelieves;
+
+
+    /**
+     * Edges drawn as traversed in the last frame, to be drawn back. Only used
+     * by the renderer.
+     */
+    private boolean[] traversedEdges = new boolean[0];
+
+
     //--------------------------------------------------------------------------
     // CONSTRUCTOR
     //--------------------------------------------------------------------------
 
 
-    private GraphVis() {
+    protected GraphVis(SimulatorContext ctx) {
+        this.ctx = ctx;
+
         /*
          * Use renderer from gs-ui package to enable all GraphStream CSS
          * properties. For example, cubic-curve for edge shape.
@@ -125,18 +170,8 @@ public class GraphVis {
 
 
     /**
-     * Get the singleton instance of GraphVis
-     *
-     * @return GraphVis object
-     */
-    protected static GraphVis getInstance() {
-        return INSTANCE;
-    }
-
-
-    /**
-     * Initialize the GraphVis singleton class. This is done be providing a
-     * reference to the graph that is desired to be visualized.
+     * Initialize GraphVis. This is done be providing a reference to the graph
+     * that is desired to be visualized.
      *
      * @param g Graph to be displayed
      */
@@ -233,9 +268,32 @@ public class GraphVis {
         jframe.add(view, BorderLayout.CENTER);
         jframe.add(statsPanel, BorderLayout.LINE_START);
 
+        jframe.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stopRenderer();
+            }
+        });
+
         // Should be done right before display
         jframe.setLocationRelativeTo(null);
         jframe.setVisible(true);
+
+
+        if (ctx.getFrameRate() > 0) {
+            startRenderer(ctx.getFrameRate());
+        }
+    }
+
+
+    /**
+     * End the visualization, once the simulation is done. The renderer, if
+     * any, is stopped and the last updates are drawn.
+     */
+    protected void end() {
+        if (stopRenderer()) {
+            render();
+        }
     }
 
 
@@ -256,24 +314,24 @@ public class GraphVis {
     /**
      * Update the node (re-draw)
      *
-     * @param id The ID of the node to be updated
+     * @param index The index of the node to be updated
      */
-    protected void updateNode(String id) {
-        ExtendedNode n = g.getNode(id);
-        int n_numAgents = n.getAgentCount();
-        String label = Integer.toString(n_numAgents);
-
-        // If the node contains the leader, add an asterisk to the label
-        if (n.containsLeader()) {
-            label = label.concat("*");
+    protected void updateNode(int index) {
+        if (renderer != null) {
+            Population p = g.getPopulation();
+            Frame f = frame();
+
+            f.agentCount.lazySet(index, p.getAgentCount(index));
+            f.infected.lazySet(index, p.infectionCount(index));
+            f.leader.lazySet(index, p.containsLeader(index) ? 1 : 0);
+            f.dirty.lazySet(index, 1);
+            numAgents = p.getNumAgents();
+            return;
         }
 
-        // Update the label, size, and colour of the node
-        n.addAttribute(UI_LABEL, label);
-        n.addAttribute(UI_SIZE, ((double) n_numAgents /
-                                 (double) g.getNumAgents()) * 100.0);
-        n.addAttribute(UI_COLOR, (double) n.infectionCount() /
-                                 (double) n.getAgentCount());
+        ExtendedNode n = g.getNode(index);
+        drawNode(n, n.getAgentCount(), n.infectionCount(), n.containsLeader(),
+                 g.getPopulation().getNumAgents());
 
         stepSleep();
     }
@@ -288,17 +346,15 @@ public class GraphVis {
      * @param traverse Is this update to denote a edge traversal?
      */
     protected void updateEdge(Edge e,  boolean traverse) {
-        // Default setting for an edge
-        int size = 1;
-        int color = 0;
-
-        if (traverse) {
-            size = 1000;
-            color = 1;	// Changes colour to blue to denote a transition
+        if (renderer != null) {
+            // Drawn back by the renderer, a frame later
+            if (traverse) {
+                frame().traversed.lazySet(e.getIndex(), 1);
+            }
+            return;
         }
 
-        e.addAttribute(UI_SIZE, size);
-        e.addAttribute(UI_COLOR, color);
+        drawEdge(e, traverse);
 
         stepSleep();
     }
@@ -308,8 +364,14 @@ public class GraphVis {
      * Update the infection counter label.
      */
     protected void updateInfectionLabel() {
+        if (renderer != null) {
+            numAgents = g.getPopulation().getNumAgents();
+            infections = g.infectionCount();
+            return;
+        }
+
         infectionCounter.setText("Infections: " + g.infectionCount() + "/"
-                                                + g.getNumAgents());
+                                                + g.getPopulation().getNumAgents());
     }
 
 
@@ -317,6 +379,11 @@ public class GraphVis {
      * Update the leader election complete label.
      */
     protected void updateLeaderElectionCompleteLabel(boolean flag) {
+        if (renderer != null) {
+            leaderBelieves = flag;
+            return;
+        }
+
         // TODO: Should call graph to get this
         leaderElectionComplete.setText("Leader Believes: " + flag);
     }
@@ -326,9 +393,15 @@ public class GraphVis {
      * Update the all election complete label.
      */
     protected void updateAllElectionCompleteLabel() {
+        if (renderer != null) {
+            numAgents = g.getPopulation().getNumAgents();
+            believers = g.electionCompleteCount();
+            return;
+        }
+
         allElectionComplete.setText("Believers: " +
                                     g.electionCompleteCount() + "/" +
-                                    g.getNumAgents());
+                                    g.getPopulation().getNumAgents());
     }
 
 
@@ -337,13 +410,155 @@ public class GraphVis {
     //--------------------------------------------------------------------------
 
 
+    private void drawNode(ExtendedNode n, int n_numAgents, int n_infected,
+                          boolean containsLeader, int numAgents) {
+        String label = Integer.toString(n_numAgents);
+
+        // If the node contains the leader, add an asterisk to the label
+        if (containsLeader) {
+            label = label.concat("*");
+        }
+
+        // Update the label, size, and colour of the node
+        n.addAttribute(UI_LABEL, label);
+        n.addAttribute(UI_SIZE, ((double) n_numAgents /
+                                 (double) numAgents) * 100.0);
+        n.addAttribute(UI_COLOR, (double) n_infected /
+                                 (double) n_numAgents);
+    }
+
+
+    private void drawEdge(Edge e, boolean traverse) {
+        // Default setting for an edge
+        int size = 1;
+        int color = 0;
+
+        if (traverse) {
+            size = 1000;
+            color = 1;	// Changes colour to blue to denote a transition
+        }
+
+        e.addAttribute(UI_SIZE, size);
+        e.addAttribute(UI_COLOR, color);
+    }
+
+
+    /**
+     * Node and edge state of the frame the simulation thread publishes to,
+     * made anew if the graph has changed size. Only called by the simulation
+     * thread.
+     */
+    private Frame frame() {
+        Frame f = frame;
+
+        if (f == null || f.numNodes != g.getNodeCount() ||
+                         f.numEdges != g.getEdgeCount()) {
+            f = new Frame(g.getNodeCount(), g.getEdgeCount());
+            frame = f;
+        }
+
+        return f;
+    }
+
+
+    /**
+     * Draw the published updates on a thread of its own, at a fixed rate
+     *
+     * @param frameRate Frames per second
+     */
+    private void startRenderer(int frameRate) {
+        renderer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "GraphVis renderer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        renderer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                // An exception would cancel all later frames
+                try {
+                    render();
+                } catch (RuntimeException e) {
+                    Logger.error(e, "Visualization frame failed");
+                }
+            }
+        }, 0, 1000000 / frameRate, TimeUnit.MICROSECONDS);
+    }
+
+
+    /**
+     * Stop the renderer, if running, and wait for its frame in progress
+     *
+     * @return True if it was running
+     */
+    private synchronized boolean stopRenderer() {
+        if (renderer == null) {
+            return false;
+        }
+
+        renderer.shutdown();
+
+        try {
+            renderer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        renderer = null;
+        return true;
+    }
+
+
+    /**
+     * Draw one frame: every node updated since the last one, once, with its
+     * latest state, traversed edges, and the labels
+     */
+    private void render() {
+        Frame f = frame;
+
+        if (f != null) {
+            int n = numAgents;
+
+            for (int i = 0; i < f.numNodes; i++) {
+                if (f.dirty.getAndSet(i, 0) == 1) {
+                    drawNode((ExtendedNode) g.getNode(i), f.agentCount.get(i),
+                             f.infected.get(i), f.leader.get(i) == 1, n);
+                }
+            }
+
+            if (traversedEdges.length != f.numEdges) {
+                traversedEdges = new boolean[f.numEdges];
+            }
+
+            for (int i = 0; i < f.numEdges; i++) {
+                boolean traversed = f.traversed.getAndSet(i, 0) == 1;
+
+                if (traversed || traversedEdges[i]) {
+                    drawEdge(g.getEdge(i), traversed);
+                    traversedEdges[i] = traversed;
+                }
+            }
+        }
+
+        infectionCounter.setText("Infections: " + infections + "/" + numAgents);
+        leaderElectionComplete.setText("Leader Believes: " + leaderBelieves);
+        allElectionComplete.setText("Believers: " + believers + "/" + numAgents);
+
+        g.stepBegins(g.getStep() + 1);
+    }
+
+
     /**
      * Step the graph visualization event and sleep to let user see the changes
      * more clearly. This is used by the update methods at the end of a call
      */
     private void stepSleep() {
         g.stepBegins(g.getStep() + 1);
-        Sleep.sleep();
+        ctx.sleep();
     }
 
 
@@ -369,4 +584,39 @@ public class GraphVis {
             s.close();
         }
     }
+
+
+    //--------------------------------------------------------------------------
+    // PRIVATE CLASSES
+    //--------------------------------------------------------------------------
+
+
+    /**
+     * State of the nodes and edges, written by the simulation thread and read
+     * by the renderer. A node is marked dirty after its state is written, so
+     * a frame may draw a node a step ahead of the rest, but never misses the
+     * last update.
+     */
+    private static final class Frame {
+
+        final int numNodes;
+        final int numEdges;
+
+        final AtomicIntegerArray agentCount;
+        final AtomicIntegerArray infected;
+        final AtomicIntegerArray leader;
+        final AtomicIntegerArray dirty;
+        final AtomicIntegerArray traversed;
+
+        Frame(int numNodes, int numEdges) {
+            this.numNodes = numNodes;
+            this.numEdges = numEdges;
+
+            agentCount = new AtomicIntegerArray(numNodes);
+            infected = new AtomicIntegerArray(numNodes);
+            leader = new AtomicIntegerArray(numNodes);
+            dirty = new AtomicIntegerArray(numNodes);
+            traversed = new AtomicIntegerArray(numEdges);
+        }
+    }
 }
\ No newline at end of file
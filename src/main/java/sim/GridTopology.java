@@ -0,0 +1,250 @@
+/*
+ * GridTopology.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+
+/**
+ * Implicit topology of a side * side grid graph, as GridGenerator makes it.
+ * Node "x_y" is linked to the nodes next to it, and with cross edges to the
+ * diagonal ones too.
+ *
+ * The generator grows the grid a ring at a time from the corner "0_0", ring r
+ * being the nodes with max(x, y) == r, and indexes the nodes in that order.
+ * If directed, edges point away from that corner, except for the
+ * anti-diagonal cross edges which point to whichever end was made first.
+ *
+ * Leaving edges are not in the order of the generated graph, which depends on
+ * how GraphStream reorders them as they are added. Runs with the same seed
+ * are thus alike, but not the same, as on the generated graph.
+ *
+ */
+public class GridTopology extends ImplicitTopology {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Steps to each neighbour, the first 4 along the grid, the last 4 across
+     * (cross edges)
+     */
+    private static final int[] DX = {-1, 1,  0, 0, -1,  1, -1, 1};
+    private static final int[] DY = { 0, 0, -1, 1, -1, -1,  1, 1};
+
+
+    private final int side;
+    private final int numNodes;
+    private final boolean directed;
+
+
+    /**
+     * How many of the steps in DX and DY are edges of the grid
+     */
+    private final int numSteps;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * @param side Number of nodes along a side of the grid
+     * @param directed Are the edges directed?
+     * @param crossEdges Does the grid have cross (diagonal) edges?
+     */
+    public GridTopology(int side, boolean directed, boolean crossEdges) {
+        this.side = side;
+        this.directed = directed;
+        numNodes = side * side;
+        numSteps = crossEdges ? 8 : 4;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    @Override
+    public int numNodes() {
+        return numNodes;
+    }
+
+
+    @Override
+    public int outDegree(int node) {
+        int r = ring(node);
+        int x = x(node, r);
+        int y = y(node, r);
+        int outDegree = 0;
+
+        for (int s = 0; s < numSteps; s++) {
+            if (isEdge(x, y, s)) {
+                outDegree++;
+            }
+        }
+
+        return outDegree;
+    }
+
+
+    @Override
+    public int neighbour(int node, int k) {
+        int r = ring(node);
+        int x = x(node, r);
+        int y = y(node, r);
+
+        for (int s = 0; s < numSteps; s++) {
+            if (isEdge(x, y, s) && k-- == 0) {
+                return index(x + DX[s], y + DY[s]);
+            }
+        }
+
+        throw new IndexOutOfBoundsException("Leaving edge out of range for "
+                                            + "node " + node);
+    }
+
+
+    /**
+     * Only the far corner can be a dead end, when directed
+     */
+    @Override
+    public boolean hasDeadEnd() {
+        return outDegree(numNodes - 1) == 0;
+    }
+
+
+    @Override
+    public int nodeIndex(String id) {
+        int split = id.indexOf('_');
+
+        if (split < 0) {
+            return -1;
+        }
+
+        int x = parseIndex(id.substring(0, split), side);
+        int y = parseIndex(id.substring(split + 1), side);
+
+        if (x < 0 || y < 0) {
+            return -1;
+        }
+
+        return index(x, y);
+    }
+
+
+    @Override
+    public String nodeId(int node) {
+        int r = ring(node);
+        return x(node, r) + "_" + y(node, r);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Is there an edge leaving node (x, y) for step s?
+     */
+    private boolean isEdge(int x, int y, int s) {
+        int dx = DX[s];
+        int dy = DY[s];
+        int tx = x + dx;
+        int ty = y + dy;
+
+        if (tx < 0 || ty < 0 || tx >= side || ty >= side) {
+            return false;
+        }
+
+        if (!directed || (dx >= 0 && dy >= 0)) {
+            return true;
+        }
+
+        // Anti-diagonal, see class comment
+        if (dx > 0 && dy < 0) {
+            return x < y;
+        }
+
+        if (dx < 0 && dy > 0) {
+            return x - 1 > y;
+        }
+
+        // Towards the corner "0_0"
+        return false;
+    }
+
+
+    /**
+     * Ring of a node, that is max(x, y)
+     */
+    private static int ring(int node) {
+        int r = (int) Math.sqrt(node);
+
+        // In case of rounding
+        while (r * r > node) {
+            r--;
+        }
+
+        while ((r + 1) * (r + 1) <= node) {
+            r++;
+        }
+
+        return r;
+    }
+
+
+    /*
+     * Ring r is made in order: (r, 0) to (r, r - 1), (0, r) to (r - 1, r),
+     * then (r, r)
+     */
+
+
+    private static int x(int node, int r) {
+        int offset = node - r * r;
+        return (offset >= r && offset < 2 * r) ? offset - r : r;
+    }
+
+
+    private static int y(int node, int r) {
+        int offset = node - r * r;
+        return offset < r ? offset : r;
+    }
+
+
+    private static int index(int x, int y) {
+        if (x > y) {
+            return x * x + y;
+        }
+
+        if (y > x) {
+            return y * y + y + x;
+        }
+
+        return x * x + 2 * x;
+    }
+}
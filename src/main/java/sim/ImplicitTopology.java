@@ -0,0 +1,104 @@
+/*
+ * ImplicitTopology.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+
+/**
+ * Topology of a generated graph, computed from its parameters instead of
+ * stored. Out degrees and neighbours are worked out arithmetically on each
+ * call, so it takes the same few bytes whatever the size of the graph. There
+ * are no GraphStream nodes or edges behind it, so it can't be visualized.
+ *
+ * Node indices and IDs are those the generator would have given, so settings
+ * that name a node, like the SINGLE agent distribution node, still hold.
+ *
+ */
+public abstract class ImplicitTopology extends Topology {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Index of the node with the given ID
+     *
+     * @param id ID of the node, as the generator would have named it
+     * @return Index of the node, -1 if there is no such node
+     */
+    public abstract int nodeIndex(String id);
+
+
+    /**
+     * ID of a node, as the generator would have named it
+     *
+     * @param node Index of the node
+     * @return ID of the node
+     */
+    public abstract String nodeId(int node);
+
+
+    /**
+     * There are no edges to visualize
+     *
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public int edge(int node, int k) {
+        throw new UnsupportedOperationException("Implicit topology has no "
+                                                + "edges");
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Parse a node ID that is a plain index, as the chain and fully connected
+     * generators name them
+     *
+     * @param id ID of the node
+     * @param numNodes Number of nodes
+     * @return Index of the node, -1 if not a number or out of range
+     */
+    protected static int parseIndex(String id, int numNodes) {
+        int index;
+
+        try {
+            index = Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        // Not an ID the generator would have made, like "007"
+        if (index < 0 || index >= numNodes ||
+            !Integer.toString(index).equals(id)) {
+            return -1;
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,629 @@
+/*
+ * LeapTimeStep.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package sim;
+
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.Logger;
+
+
+/**
+ * Approximate time step for a huge well-mixed population, all agents in a
+ * single dead end node. Like CountTimeStep, agents are counted rather than
+ * simulated, but more coarsely still:
+ *
+ *     - Agents that don't believe election is complete and follow the real
+ *       leader, its candidate among them while it still is one
+ *     - Agents that don't, and follow anyone else
+ *     - Agents that believe election is complete, following the real leader
+ *       or anyone else
+ *
+ * Only the candidate of the real leader is followed, so other candidates
+ * never come to believe election is complete. They seldom do, and less and
+ * less so as the population grows, but this is where the engine departs from
+ * TimeStep. Every interaction that changes one of the counts is one of a few
+ * kinds (channels below), each with its number of pairs.
+ *
+ * While counts are large, a leap draws how many of each kind happen over
+ * many steps at once, from Poisson distributions (tau-leaping). The leap is
+ * as long as it can be while no count is expected to change by more than a
+ * fraction tolerance of itself, nor go past a marker. Otherwise, near the
+ * markers and when counts get small, interactions are stepped one by one,
+ * skipping no-op steps as CountTimeStep does. Markers are thus always set on
+ * the step they happen.
+ *
+ * Needs termB >= 0, as CountTimeStep.
+ *
+ */
+public class LeapTimeStep implements RunEngine {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /*
+     * Kinds of interactions that change the counts
+     */
+    private static final int INFECT_BY_CANDIDATE = 0;
+    private static final int INFECT_BY_FOLLOWER = 1;
+    private static final int CANDIDATE_MEETS_FOLLOWER = 2;
+    private static final int SPREAD_TO_LEADER = 3;
+    private static final int SPREAD_TO_OTHER_COUNTED = 4;
+    private static final int SPREAD_TO_OTHER = 5;
+    private static final int COUNTED = 6;
+    private static final int NUM_CHANNELS = 7;
+
+
+    /**
+     * A leap is only worth it for at least this many interactions
+     */
+    private static final double LEAP_MIN_EVENTS = 10;
+
+
+    /**
+     * Number of interactions to step one by one when a leap isn't worth it
+     */
+    private static final int STEP_EVENTS = 100;
+
+
+    private boolean flag_infectionComplete;
+    private boolean flag_leaderElectionComplete;
+    private boolean flag_allElectionComplete;
+
+
+    /**
+     * The current time step. Every step is an interaction.
+     */
+    private int step;
+
+
+    private int infectionCounter;
+    private int electionCompleteCounter;
+
+
+    /**
+     * Agents that don't believe election is complete, following the real
+     * leader or anyone else
+     */
+    private int leaderFollowers;
+    private int otherFollowers;
+
+
+    /**
+     * Is the real leader still a candidate, and its counters
+     */
+    private boolean candidate;
+    private int conversions;
+    private int metFollowers;
+
+
+    /**
+     * Agents that believe election is complete, following the real leader or
+     * anyone else
+     */
+    private int completeLeader;
+    private int completeOther;
+
+
+    /**
+     * Number of pairs of each kind, as of the last call to channels()
+     */
+    private final long[] pairs = new long[NUM_CHANNELS];
+
+
+    /**
+     * Chance of each kind per step, as of the last call to leapSize()
+     */
+    private final double[] p = new double[NUM_CHANNELS];
+
+
+    /**
+     * Number of interactions of each kind drawn for a leap
+     */
+    private final long[] events = new long[NUM_CHANNELS];
+
+
+    private final RandomSource rs;
+    private final SimulatorRun simRun;
+
+    private final int termA;
+    private final int termB;
+    private final int numAgents;
+    private final long numPairs;
+    private final double tolerance;
+    private final boolean flag_debug;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Create a time step, with every agent a candidate
+     *
+     * @param numAgents Number of agents, 2 or more
+     * @param termA Multiplicative factor
+     * @param termB Additive factor, 0 or more
+     * @param tolerance Largest expected change of a count over a leap, as a
+     *                  fraction of the count. 0 steps one by one.
+     * @param rs Random source for this run
+     */
+    public LeapTimeStep(int numAgents, int termA, int termB, double tolerance,
+                                                             RandomSource rs) {
+        this.numAgents = numAgents;
+        this.termA = termA;
+        this.termB = termB;
+        this.tolerance = tolerance;
+        this.rs = rs;
+
+        numPairs = (long) numAgents * (numAgents - 1) / 2;
+
+        leaderFollowers = 1;
+        otherFollowers = numAgents - 1;
+        candidate = true;
+        conversions = 0;
+        metFollowers = 0;
+        completeLeader = 0;
+        completeOther = 0;
+
+        step = 0;
+        infectionCounter = 1;
+        electionCompleteCounter = 0;
+
+        flag_debug = Logger.getLevel().ordinal() <= Level.DEBUG.ordinal();
+
+        simRun = new SimulatorRun();
+        simRun.setNumAgents(numAgents);
+
+        Logger.debug("LeapTimeStep INIT");
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * A single step of the simulation, always an interaction
+     */
+    @Override
+    public void step() {
+        long effective = channels();
+
+        if (effective > 0 && rs.nextDouble() * numPairs < effective) {
+            interact(effective);
+        }
+
+        step++;
+    }
+
+
+    @Override
+    public void runUntilComplete(int maxSteps) {
+        while (step < maxSteps && !isComplete()) {
+            if (!leap(maxSteps)) {
+                for (int i = 0; i < STEP_EVENTS; i++) {
+                    if (!stepToNextEvent(maxSteps) || isComplete()) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (isComplete()) {
+            Logger.info("STEP: {0}; Cutting off simulation - all " +
+                        "actions complete", step - 1);
+        }
+    }
+
+
+    @Override
+    public void end() {
+        Logger.info("Simulation run COMPLETE");
+
+        simRun.setInfections(infectionCounter);
+        simRun.setElectionCompleteCount(electionCompleteCounter);
+        simRun.setInteractions(step);
+        simRun.setTraversals(0);
+
+        Logger.info("# of INFECTED agents: " + infectionCounter + "/" + numAgents);
+        Logger.info("# of agents that believe election is COMPLETE: " + electionCompleteCounter + "/" + numAgents);
+        Logger.info("# of agent INTERACTIONS: " + step);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public boolean isFlag_infectionComplete() {
+        return flag_infectionComplete;
+    }
+
+
+    @Override
+    public boolean isFlag_leaderElectionComplete() {
+        return flag_leaderElectionComplete;
+    }
+
+
+    @Override
+    public boolean isFlag_allElectionComplete() {
+        return flag_allElectionComplete;
+    }
+
+
+    @Override
+    public SimulatorRun getSimRun() {
+        return simRun;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private boolean isComplete() {
+        return flag_leaderElectionComplete && flag_allElectionComplete;
+    }
+
+
+    /**
+     * Count the pairs of each kind of interaction that changes the counts
+     *
+     * @return Number of such pairs in all
+     */
+    private long channels() {
+        int c = candidate ? 1 : 0;
+        long complete = completeLeader + completeOther;
+        boolean counting = !flag_allElectionComplete;
+
+        pairs[INFECT_BY_CANDIDATE] = (long) c * otherFollowers;
+        pairs[INFECT_BY_FOLLOWER] = (long) (leaderFollowers - c) *
+                                    otherFollowers;
+        pairs[CANDIDATE_MEETS_FOLLOWER] = (long) c * (leaderFollowers - c);
+
+        // No one believes election is complete while the real leader is a
+        // candidate, so it is never the one the word is spread to
+        pairs[SPREAD_TO_LEADER] = complete * (leaderFollowers - c);
+        pairs[SPREAD_TO_OTHER_COUNTED] = (long) completeLeader *
+                                         otherFollowers;
+        pairs[SPREAD_TO_OTHER] = (long) completeOther * otherFollowers;
+        pairs[COUNTED] = counting ? complete * (complete - 1) / 2 -
+                         (long) completeOther * (completeOther - 1) / 2 : 0;
+
+        long total = 0;
+
+        for (long p : pairs) {
+            total += p;
+        }
+
+        return total;
+    }
+
+
+    /**
+     * Step to the next interaction that changes the counts, skipping the
+     * no-op steps in between
+     *
+     * @param maxSteps Max number of steps of the run
+     * @return False if the run hit maxSteps first, true otherwise
+     */
+    private boolean stepToNextEvent(int maxSteps) {
+        long effective = channels();
+
+        // Nothing will ever change again
+        if (effective == 0) {
+            step = maxSteps;
+            return false;
+        }
+
+        if (effective < numPairs) {
+            double skip = Math.floor(Math.log(1 - rs.nextDouble()) /
+                          Math.log1p(-(double) effective / numPairs));
+
+            if (skip >= maxSteps - step) {
+                step = maxSteps;
+                return false;
+            }
+
+            step += (int) skip;
+        }
+
+        interact(effective);
+        step++;
+
+        return true;
+    }
+
+
+    /**
+     * An interaction of a kind drawn at random, in proportion to its number
+     * of pairs
+     *
+     * @param effective Number of pairs of all kinds
+     */
+    private void interact(long effective) {
+        long r = Math.min((long) (rs.nextDouble() * effective), effective - 1);
+        int channel = 0;
+
+        while (r >= pairs[channel]) {
+            r -= pairs[channel++];
+        }
+
+        if (flag_debug) {
+            Logger.debug("Step: {0}; Interaction of kind {1}", step, channel);
+        }
+
+        switch (channel) {
+            case INFECT_BY_CANDIDATE:
+                infection();
+                conversions++;
+                isElectionComplete();
+                break;
+            case INFECT_BY_FOLLOWER:
+                infection();
+                break;
+            case CANDIDATE_MEETS_FOLLOWER:
+                metFollowers++;
+                isElectionComplete();
+                break;
+            case SPREAD_TO_LEADER:
+                leaderFollowers--;
+                completeLeader++;
+                counted();
+                break;
+            case SPREAD_TO_OTHER_COUNTED:
+                otherFollowers--;
+                completeOther++;
+                counted();
+                break;
+            case SPREAD_TO_OTHER:
+                otherFollowers--;
+                completeOther++;
+                break;
+            case COUNTED:
+                counted();
+                break;
+        }
+    }
+
+
+    /**
+     * Leap as many steps as the tolerance allows, if that is worth it
+     *
+     * @param maxSteps Max number of steps of the run
+     * @return True if a leap was made, false otherwise
+     */
+    private boolean leap(int maxSteps) {
+        long effective = channels();
+        double tau = Math.min(leapSize(), maxSteps - step - 1);
+
+        while (tau * effective / numPairs >= LEAP_MIN_EVENTS) {
+            int steps = (int) tau;
+
+            if (tryLeap(steps)) {
+                if (flag_debug) {
+                    Logger.debug("Step: {0}; Leap of {1} steps", step, steps);
+                }
+
+                step += steps;
+                return true;
+            }
+
+            tau /= 2;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Number of steps over which no count is expected to change by more than
+     * a fraction tolerance of itself, nor by more than its standard deviation
+     * would allow (Cao, Gillespie and Petzold). Counts with a marker at 0
+     * are taken as the distance to it.
+     *
+     * @return Number of steps, not rounded
+     */
+    private double leapSize() {
+        for (int i = 0; i < NUM_CHANNELS; i++) {
+            p[i] = (double) pairs[i] / numPairs;
+        }
+
+        double tau = Double.MAX_VALUE;
+
+        tau = Math.min(tau, bound(leaderFollowers,
+                p[INFECT_BY_CANDIDATE] + p[INFECT_BY_FOLLOWER] -
+                p[SPREAD_TO_LEADER],
+                p[INFECT_BY_CANDIDATE] + p[INFECT_BY_FOLLOWER] +
+                p[SPREAD_TO_LEADER]));
+
+        double toOther = p[INFECT_BY_CANDIDATE] + p[INFECT_BY_FOLLOWER] +
+                         p[SPREAD_TO_OTHER_COUNTED] + p[SPREAD_TO_OTHER];
+        tau = Math.min(tau, bound(otherFollowers, toOther, toOther));
+
+        tau = Math.min(tau, bound(completeLeader, p[SPREAD_TO_LEADER],
+                                                  p[SPREAD_TO_LEADER]));
+
+        double other = p[SPREAD_TO_OTHER_COUNTED] + p[SPREAD_TO_OTHER];
+        tau = Math.min(tau, bound(completeOther, other, other));
+
+        double counted = p[SPREAD_TO_LEADER] + p[SPREAD_TO_OTHER_COUNTED] +
+                         p[COUNTED];
+        tau = Math.min(tau, bound(numAgents - electionCompleteCounter,
+                                  counted, counted));
+
+        if (candidate) {
+            // Distance of the leader to believing election is complete
+            double a = termA;
+            double m = p[CANDIDATE_MEETS_FOLLOWER];
+            double c = p[INFECT_BY_CANDIDATE];
+
+            tau = Math.min(tau, bound(termB + termA * conversions -
+                                      metFollowers + 1,
+                                      a * c - m, a * a * c + m));
+        }
+
+        return tau;
+    }
+
+
+    /**
+     * Leap bound for a single count
+     *
+     * @param count Current count
+     * @param mean Expected change per step
+     * @param variance Variance of the change per step
+     * @return Number of steps
+     */
+    private double bound(long count, double mean, double variance) {
+        double change = Math.max(tolerance * count, 1);
+
+        return Math.min(mean == 0 ? Double.MAX_VALUE : change / Math.abs(mean),
+                        variance == 0 ? Double.MAX_VALUE :
+                        change * change / variance);
+    }
+
+
+    /**
+     * Draw the number of interactions of each kind over a number of steps,
+     * and apply them, unless counts would go negative or a marker would be
+     * passed
+     *
+     * @param steps Number of steps of the leap
+     * @return True if the leap was applied, false otherwise
+     */
+    private boolean tryLeap(int steps) {
+        long[] k = events;
+
+        for (int i = 0; i < NUM_CHANNELS; i++) {
+            k[i] = pairs[i] == 0 ? 0 : rs.nextPoisson(steps * p[i]);
+        }
+
+        long infected = k[INFECT_BY_CANDIDATE] + k[INFECT_BY_FOLLOWER];
+        long leader = leaderFollowers + infected - k[SPREAD_TO_LEADER];
+        long other = otherFollowers - infected - k[SPREAD_TO_OTHER_COUNTED] -
+                     k[SPREAD_TO_OTHER];
+        long counted = k[SPREAD_TO_LEADER] + k[SPREAD_TO_OTHER_COUNTED] +
+                       k[COUNTED];
+        long met = metFollowers + k[CANDIDATE_MEETS_FOLLOWER];
+        long converted = conversions + k[INFECT_BY_CANDIDATE];
+
+        if (leader < (candidate ? 1 : 0) || other < 0 ||
+            (infected > 0 && infectionCounter + infected >= numAgents) ||
+            electionCompleteCounter + counted >= numAgents ||
+            (candidate && termB + termA * converted < met)) {
+
+            return false;
+        }
+
+        leaderFollowers = (int) leader;
+        otherFollowers = (int) other;
+        infectionCounter += infected;
+        conversions = (int) converted;
+        metFollowers = (int) met;
+        completeLeader += k[SPREAD_TO_LEADER];
+        completeOther += k[SPREAD_TO_OTHER_COUNTED] + k[SPREAD_TO_OTHER];
+        electionCompleteCounter += counted;
+
+        return true;
+    }
+
+
+    /**
+     * An agent that doesn't believe election is complete, following anyone
+     * else, now follows the real leader
+     */
+    private void infection() {
+        otherFollowers--;
+        leaderFollowers++;
+        infectionCounter++;
+
+        if (!flag_infectionComplete && infectionCounter == numAgents) {
+            Logger.info("STEP: {0}; All agents INFECTED", step);
+            simRun.setInfectionCompleteStep(step);
+            simRun.setInfectionCompleteInteractions(step);
+
+            flag_infectionComplete = true;
+        }
+    }
+
+
+    /**
+     * One more agent that believes election is complete counted, while not
+     * all do yet
+     */
+    private void counted() {
+        if (!flag_allElectionComplete) {
+            electionCompleteCounter++;
+            flag_electionComplete();
+        }
+    }
+
+
+    /**
+     * Same as TimeStep.isElectionComplete(), for the real leader
+     */
+    private void isElectionComplete() {
+        if ((termB + (termA * conversions)) < metFollowers) {
+            candidate = false;
+            leaderFollowers--;
+            completeLeader++;
+
+            Logger.info("STEP: {0}; Agent believes election is complete and " +
+                        "is the leader \n\t # of interactions: {1}; AID: {2}",
+                        step, step, numAgents - 1);
+
+            simRun.setLeaderElectionCompleteStep(step);
+            simRun.setLeaderElectionCompleteInteractions(step);
+
+            electionCompleteCounter++;
+            flag_leaderElectionComplete = true;
+
+            flag_electionComplete();
+
+            if (!flag_infectionComplete) {
+                Logger.warn("Leader delcared election complete EARLY");
+            }
+        }
+    }
+
+
+    private void flag_electionComplete() {
+        if (!flag_allElectionComplete && electionCompleteCounter == numAgents) {
+
+            Logger.info("STEP: {0}; All agents believe election is complete", step);
+            simRun.setAllElectionCompleteStep(step);
+            simRun.setAllElectionCompleteInteractions(step);
+
+            flag_allElectionComplete = true;
+        }
+    }
+}
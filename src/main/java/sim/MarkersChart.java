@@ -21,8 +21,12 @@
 
 package sim;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import javax.swing.JFrame;
 
@@ -36,6 +40,8 @@ import org.jfree.chart.JFreeChart;
 import org.jfree.data.xy.XYSeriesCollection;
 import org.pmw.tinylog.Logger;
 
+import com.google.gson.Gson;
+
 
 /**
  * Chart of key markers during a simulation.
@@ -111,6 +117,53 @@ public class MarkersChart {
     ///////////////////////////////////////////////////////////////////////////
 
 
+    /**
+     * Chart of a simulation that has already run, from its data file (see
+     * Simulator.saveSimData()). Saved to the same place as a chart made
+     * during the simulation.
+     *
+     * @param dirName Name of the logs directory of the simulation
+     * @param timestamp Timestamp of the simulation
+     * @return Chart of every run in the data file
+     * @throws IOException If the data file can't be read
+     */
+    public static MarkersChart fromData(String dirName, String timestamp)
+                                                        throws IOException {
+        MarkersChart mc = new MarkersChart(Integer.MAX_VALUE, dirName,
+                                                              timestamp);
+        Gson gson = new Gson();
+
+        BufferedReader reader = Files.newBufferedReader(
+                                  Paths.get(System.getProperty("user.dir"),
+                                            "logs", dirName,
+                                            "data." + timestamp + ".jsonl"),
+                                  StandardCharsets.UTF_8);
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                SimulatorRun r = gson.fromJson(line, SimulatorRun.class);
+
+                mc.addDataPoint(r.getNumAgents(),
+                                r.getInfectionCompleteInteractions());
+                mc.addDataPointLeader(r.getNumAgents(),
+                                      r.getLeaderElectionCompleteInteractions());
+                mc.addDataPointAll(r.getNumAgents(),
+                                   r.getAllElectionCompleteInteractions());
+            }
+        } finally {
+            reader.close();
+        }
+
+        return mc;
+    }
+
+
     public void addDataPoint(int numAgents, int step) {
         infectionComplete.addValue(numAgents, step);
     }
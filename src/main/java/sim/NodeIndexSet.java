@@ -0,0 +1,185 @@
+/*
+ * NodeIndexSet.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Set of node indices with O(1) add, remove, and random access. Members are
+ * kept packed at the front of an array, removal swaps the last member into the
+ * freed spot. Used to keep track of which nodes can serve an action, so a node
+ * can be picked with a single random draw.
+ *
+ */
+public class NodeIndexSet {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Members, packed in [0, size)
+     */
+    private final int[] members;
+
+
+    /**
+     * Position of each index in members, -1 if not a member
+     */
+    private final int[] position;
+
+
+    private int size;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Create an empty set
+     *
+     * @param capacity Indices allowed are 0 to capacity - 1
+     */
+    public NodeIndexSet(int capacity) {
+        members = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public boolean contains(int index) {
+        return position[index] != -1;
+    }
+
+
+    /**
+     * Add index to the set, nothing happens if already a member
+     *
+     * @param index Index to add
+     */
+    public void add(int index) {
+        if (position[index] == -1) {
+            members[size] = index;
+            position[index] = size;
+            size++;
+        }
+    }
+
+
+    /**
+     * Remove index from the set, nothing happens if not a member
+     *
+     * @param index Index to remove
+     */
+    public void remove(int index) {
+        int pos = position[index];
+
+        if (pos != -1) {
+            int last = members[--size];
+            members[pos] = last;
+            position[last] = pos;
+            position[index] = -1;
+        }
+    }
+
+
+    /**
+     * Add or remove index
+     *
+     * @param index Index in question
+     * @param member Should it be a member?
+     */
+    public void set(int index, boolean member) {
+        if (member) {
+            add(index);
+        }
+        else {
+            remove(index);
+        }
+    }
+
+
+    /**
+     * Write the members, in order, see read()
+     *
+     * @param out Where to write to
+     * @throws IOException If it can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+
+        for (int i = 0; i < size; i++) {
+            out.writeInt(members[i]);
+        }
+    }
+
+
+    /**
+     * Replace the members with those written by write(), in the same order.
+     * Order matters to anyone picking a member at random by position.
+     *
+     * @param in Where to read from
+     * @throws IOException If it can't be read
+     */
+    public void read(DataInput in) throws IOException {
+        for (int i = 0; i < size; i++) {
+            position[members[i]] = -1;
+        }
+        size = 0;
+
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            add(in.readInt());
+        }
+    }
+
+
+    /**
+     * Member at position i. Order has no meaning, it changes as members are
+     * added and removed.
+     *
+     * @param i Position between 0 and size() - 1
+     * @return Index at that position
+     */
+    public int get(int i) {
+        return members[i];
+    }
+
+
+    public int size() {
+        return size;
+    }
+}
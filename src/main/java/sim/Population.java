@@ -0,0 +1,654 @@
+/*
+ * Population.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.pmw.tinylog.Logger;
+
+
+/**
+ * Where every agent is, and in what state, during a run. The agents of each
+ * node, by node index, over a Topology. Along with the agent index used for
+ * node selection, so that a node that can serve an action is picked with a
+ * single random draw.
+ *
+ * This is all the state of a run, no GraphStream objects are involved. Runs
+ * on different threads each have a population of their own, over a shared
+ * topology.
+ *
+ */
+public class Population {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Starting capacity of the agent list of a node. It grows as needed, a
+     * node holding all the agents of the graph is the exception, not the rule.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+
+    private final Topology topology;
+    private final int numNodes;
+
+
+    /**
+     * Number of agents in the whole graph (static during a run)
+     */
+    private int numAgents;
+
+
+    /**
+     * State of all the agents, nodes hold slots into it
+     */
+    private AgentStore agentStore;
+
+
+    /**
+     * Slots of the agents in each node, packed in [0, agentCount[node]).
+     * Order has no meaning, removal moves the last agent into the freed spot.
+     * Null for a node that never had an agent.
+     */
+    private final int[][] agents;
+    private final int[] agentCount;
+
+
+    /**
+     * Index of the node that all agents have hit a dead end in, -1 if none
+     */
+    private int deadEnd_nodeIndex;
+
+
+    /*
+     * Agent index, kept up to date as agents come and go.
+     *
+     * agentCounts    - number of agents in each node, by node index
+     * interactCounts - as above, but 0 for nodes that can't serve interact
+     * traverseCounts - as above, but 0 for nodes that can't serve traverse
+     * interactNodes  - nodes that can serve interact, 2 or more agents
+     * traverseNodes  - nodes that can serve traverse, 1 or more agents and
+     *                  an out degree of 1 or more
+     */
+    private final FenwickTree agentCounts;
+    private final FenwickTree interactCounts;
+    private final FenwickTree traverseCounts;
+    private final NodeIndexSet interactNodes;
+    private final NodeIndexSet traverseNodes;
+
+
+    /*
+     * Agent state counts, kept up to date as agents come and go, and as
+     * their state changes through setLeaderAID() and setElectionComplete().
+     *
+     * infected       - agents infected by the leader, by node index
+     * complete       - agents that believe election is complete, by node
+     *                  index
+     * infectedTotal  - as infected, across the whole graph
+     * completeTotal  - as complete, across the whole graph
+     * leaderNode     - index of the node the leader is in, -1 if none
+     */
+    private final int[] infected;
+    private final int[] complete;
+    private int infectedTotal;
+    private int completeTotal;
+    private int leaderNode;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Create an empty population, call setNumAgents() and reset() before use
+     *
+     * @param topology Structure of the graph
+     */
+    public Population(Topology topology) {
+        this.topology = topology;
+        numNodes = topology.numNodes();
+
+        agents = new int[numNodes][];
+        agentCount = new int[numNodes];
+
+        agentCounts = new FenwickTree(numNodes);
+        interactCounts = new FenwickTree(numNodes);
+        traverseCounts = new FenwickTree(numNodes);
+        interactNodes = new NodeIndexSet(numNodes);
+        traverseNodes = new NodeIndexSet(numNodes);
+
+        infected = new int[numNodes];
+        complete = new int[numNodes];
+        infectedTotal = 0;
+        completeTotal = 0;
+        leaderNode = -1;
+
+        numAgents = 0;
+        deadEnd_nodeIndex = -1;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Clear the population. Every node is emptied and every agent is back to
+     * its starting state. This is done before a new run of a simulation.
+     */
+    public void reset() {
+        if (agentStore == null || agentStore.size() != numAgents) {
+            agentStore = new AgentStore(numAgents);
+        }
+        else {
+            agentStore.reset();
+        }
+
+        for (int i = 0; i < numNodes; i++) {
+            int count = agentCount[i];
+
+            if (count != 0) {
+                agentCount[i] = 0;
+                updateAgentIndex(i, count, 0);
+            }
+        }
+
+        Arrays.fill(infected, 0);
+        Arrays.fill(complete, 0);
+        infectedTotal = 0;
+        completeTotal = 0;
+        leaderNode = -1;
+
+        deadEnd_nodeIndex = -1;
+    }
+
+
+    /**
+     * Add an agent to a node
+     *
+     * @param node Index of the node
+     * @param slot Slot of the agent to be added
+     */
+    public void addAgent(int node, int slot) {
+        int count = agentCount[node];
+
+        ensureCapacity(node, count + 1);
+        agents[node][count] = slot;
+        agentCount[node] = count + 1;
+
+        updateAgentIndex(node, count, count + 1);
+        updateStateCounts(node, slot, 1);
+    }
+
+
+    /**
+     * Add a range of agents to a node. This is an additive operation.
+     *
+     * @param node Index of the node
+     * @param slots Slots of the agents
+     * @param from First slot to add, index in slots (inclusive)
+     * @param to Last slot to add, index in slots (exclusive)
+     */
+    public void addAgents(int node, int[] slots, int from, int to) {
+        int count = agentCount[node];
+        int added = to - from;
+
+        ensureCapacity(node, count + added);
+        System.arraycopy(slots, from, agents[node], count, added);
+        agentCount[node] = count + added;
+
+        updateAgentIndex(node, count, count + added);
+
+        for (int i = from; i < to; i++) {
+            updateStateCounts(node, slots[i], 1);
+        }
+    }
+
+
+    /**
+     * Remove an agent from a node. O(1), the last agent takes the place of
+     * the removed one, so the index of that agent changes.
+     *
+     * @param node Index of the node
+     * @param index Index of the agent to be removed
+     * @return Slot of the removed agent
+     */
+    public int removeAgent(int node, int index) {
+        int count = agentCount[node];
+        int[] a = agents[node];
+
+        int slot = a[index];
+        a[index] = a[count - 1];
+        agentCount[node] = count - 1;
+
+        updateAgentIndex(node, count, count - 1);
+        updateStateCounts(node, slot, -1);
+        return slot;
+    }
+
+
+    /**
+     * Get the agent at the given index of a node
+     *
+     * @param node Index of the node
+     * @param index Index between 0 and getAgentCount(node) - 1
+     * @return Slot of the agent, which is also its AID
+     */
+    public int getAgent(int node, int index) {
+        return agents[node][index];
+    }
+
+
+    public int getAgentCount(int node) {
+        return agentCount[node];
+    }
+
+
+    /**
+     * Set who an agent in a node believes is the leader. Goes through the
+     * population, rather than the agent store, to keep the infection counts.
+     *
+     * @param node Index of the node the agent is in
+     * @param slot Slot of the agent
+     * @param leaderAID AID of the leader
+     */
+    public void setLeaderAID(int node, int slot, int leaderAID) {
+        int delta = (leaderAID == numAgents - 1 ? 1 : 0) -
+                    (agentStore.getLeaderAID(slot) == numAgents - 1 ? 1 : 0);
+
+        agentStore.setLeaderAID(slot, leaderAID);
+        infected[node] += delta;
+        infectedTotal += delta;
+    }
+
+
+    /**
+     * An agent in a node believes that leader election is complete. Goes
+     * through the population, rather than the agent store, to keep the
+     * election complete counts.
+     *
+     * @param node Index of the node the agent is in
+     * @param slot Slot of the agent
+     */
+    public void setElectionComplete(int node, int slot) {
+        if (!agentStore.isElectionComplete(slot)) {
+            agentStore.setElectionComplete(slot, true);
+            complete[node]++;
+            completeTotal++;
+        }
+    }
+
+
+    /**
+     * Get the number of agents infected by the leader in a node
+     *
+     * @param node Index of the node
+     * @return Number of agents infected
+     */
+    public int infectionCount(int node) {
+        return infected[node];
+    }
+
+
+    /**
+     * Get the number of agents that believe leader election is complete in a
+     * node
+     *
+     * @param node Index of the node
+     * @return Number of agents that believe election is complete
+     */
+    public int electionCompleteCount(int node) {
+        return complete[node];
+    }
+
+
+    /**
+     * Check if a node contains the leader
+     *
+     * @param node Index of the node
+     * @return True if it does contain the leader, false otherwise
+     */
+    public boolean containsLeader(int node) {
+        return leaderNode == node;
+    }
+
+
+    /**
+     * The number of agents infected by the leader across the whole graph
+     *
+     * @return Infection count
+     */
+    public int infectionCount() {
+        return infectedTotal;
+    }
+
+
+    /**
+     * The number of agents that believe leader election is complete across the
+     * whole graph
+     *
+     * @return Count of agents that believe election is complete
+     */
+    public int electionCompleteCount() {
+        return completeTotal;
+    }
+
+
+    /**
+     * Write the whole population: the state of every agent, the agents of
+     * each node, the nodes that can serve each action, and the dead end node.
+     * Both orders matter, as agents and nodes are picked by position. See
+     * read().
+     *
+     * @param out Where to write to
+     * @throws IOException If it can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(numAgents);
+        out.writeInt(numNodes);
+        agentStore.write(out);
+
+        for (int i = 0; i < numNodes; i++) {
+            int count = agentCount[i];
+
+            out.writeInt(count);
+            for (int j = 0; j < count; j++) {
+                out.writeInt(agents[i][j]);
+            }
+        }
+
+        interactNodes.write(out);
+        traverseNodes.write(out);
+        out.writeInt(deadEnd_nodeIndex);
+    }
+
+
+    /**
+     * Replace the population with one written by write(). The agent index and
+     * the agent state counts are rebuilt as the agents are added back.
+     *
+     * @param in Where to read from
+     * @throws IOException If it can't be read, or was written for a graph
+     *                     with a different number of nodes
+     */
+    public void read(DataInput in) throws IOException {
+        int n = in.readInt();
+        int nodes = in.readInt();
+
+        if (nodes != numNodes) {
+            throw new IOException("Population of a graph of " + nodes +
+                                  " nodes, not " + numNodes);
+        }
+
+        setNumAgents(n);
+        reset();
+
+        // Agent state first, adding agents to a node counts their state
+        agentStore.read(in);
+
+        int[] slots = new int[INITIAL_CAPACITY];
+        for (int i = 0; i < numNodes; i++) {
+            int count = in.readInt();
+
+            if (count > slots.length) {
+                slots = new int[count];
+            }
+
+            for (int j = 0; j < count; j++) {
+                slots[j] = in.readInt();
+            }
+
+            addAgents(i, slots, 0, count);
+        }
+
+        // Same members as the agents just added gave, but in the same order
+        interactNodes.read(in);
+        traverseNodes.read(in);
+        deadEnd_nodeIndex = in.readInt();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Check if all agents are in a single node which has an out degree of 0,
+     * a dead end. Thus, no agent can escape. If this is the case, traversal
+     * actions cannot be attempted.
+     *
+     * @return True if the graph has hit a dead end, false otherwise
+     */
+    protected boolean agentDeadEnd() {
+        for (int i = 0; i < numNodes; i++) {
+            if (agentCount[i] == numAgents && topology.outDegree(i) == 0) {
+                Logger.warn("ALL AGENTS HAVE HIT A DEAD END - NO MORE " +
+                            " TRAVERSE ACTION");
+
+                deadEnd_nodeIndex = i;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * How many agents are currently in the graph? This is used to check if any
+     * agents have fallen off the graph.
+     *
+     * @return Number of agents across the graph currently
+     */
+    protected int checkNumAgents() {
+        int count = 0;
+
+        for (int i = 0; i < numNodes; i++) {
+            count += agentCount[i];
+        }
+
+        return count;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Grow the agent list of a node, if needed, to hold the given number of
+     * agents. Doubles, so the cost of growing is amortized over the adds.
+     *
+     * @param node Index of the node
+     * @param capacity Number of agents to hold
+     */
+    private void ensureCapacity(int node, int capacity) {
+        int[] a = agents[node];
+
+        if (a == null) {
+            agents[node] = new int[Math.max(capacity, INITIAL_CAPACITY)];
+        }
+        else if (capacity > a.length) {
+            agents[node] = Arrays.copyOf(a, Math.max(capacity, 2 * a.length));
+        }
+    }
+
+
+    private void updateAgentIndex(int node, int oldCount, int newCount) {
+        int delta = newCount - oldCount;
+
+        agentCounts.add(node, delta);
+
+        int oldInteract = oldCount >= 2 ? oldCount : 0;
+        int newInteract = newCount >= 2 ? newCount : 0;
+        interactCounts.add(node, newInteract - oldInteract);
+        interactNodes.set(node, newCount >= 2);
+
+        if (topology.outDegree(node) >= 1) {
+            traverseCounts.add(node, delta);
+            traverseNodes.set(node, newCount >= 1);
+        }
+    }
+
+
+    /**
+     * Count an agent in or out of the state counts of a node
+     *
+     * @param node Index of the node
+     * @param slot Slot of the agent
+     * @param sign 1 if the agent joins the node, -1 if it leaves
+     */
+    private void updateStateCounts(int node, int slot, int sign) {
+        // Slot is the AID
+        int leaderAID = numAgents - 1;
+
+        if (agentStore.getLeaderAID(slot) == leaderAID) {
+            infected[node] += sign;
+            infectedTotal += sign;
+        }
+
+        if (agentStore.isElectionComplete(slot)) {
+            complete[node] += sign;
+            completeTotal += sign;
+        }
+
+        if (slot == leaderAID) {
+            leaderNode = sign > 0 ? node : -1;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    protected Topology getTopology() {
+        return topology;
+    }
+
+
+    /**
+     * The number of agents in the whole graph. This is constant throughout a
+     * run.
+     *
+     * @return Number of agents in the graph
+     */
+    protected int getNumAgents() {
+        return numAgents;
+    }
+
+
+    /**
+     * State of all the agents. Nodes hold slots into it, a slot is also the
+     * AID of the agent.
+     *
+     * @return Agent store
+     */
+    protected AgentStore getAgentStore() {
+        return agentStore;
+    }
+
+
+    protected int getDeadEnd_nodeIndex() {
+        return deadEnd_nodeIndex;
+    }
+
+
+    /**
+     * Number of agents in each node, by node index
+     *
+     * @return Agent counts
+     */
+    protected FenwickTree getAgentCounts() {
+        return agentCounts;
+    }
+
+
+    /**
+     * Number of agents in each node that can serve an interact action, by
+     * node index. Nodes that can't serve it have a count of 0.
+     *
+     * @return Agent counts
+     */
+    protected FenwickTree getInteractCounts() {
+        return interactCounts;
+    }
+
+
+    /**
+     * Number of agents in each node that can serve a traverse action, by
+     * node index. Nodes that can't serve it have a count of 0.
+     *
+     * @return Agent counts
+     */
+    protected FenwickTree getTraverseCounts() {
+        return traverseCounts;
+    }
+
+
+    /**
+     * Nodes that can serve an interact action. That is, have 2 or more agents.
+     *
+     * @return Set of node indices
+     */
+    protected NodeIndexSet getInteractNodes() {
+        return interactNodes;
+    }
+
+
+    /**
+     * Nodes that can serve a traverse action. That is, have 1 or more agents
+     * and an out degree of 1 or more.
+     *
+     * @return Set of node indices
+     */
+    protected NodeIndexSet getTraverseNodes() {
+        return traverseNodes;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS - SETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Number of agents for the next run, takes effect on reset()
+     *
+     * @param numAgents Number of agents in the graph
+     */
+    protected void setNumAgents(int numAgents) {
+        this.numAgents = numAgents;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * RandomGenerator.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * Source of raw random numbers behind RandomSource. Implementations are
+ * always explicitly seeded, so that a simulation can be reproduced from its
+ * seed.
+ *
+ */
+public interface RandomGenerator {
+
+
+    /**
+     * Uniformly distributed int between 0 (inclusive) and bound (exclusive)
+     *
+     * @param bound Upper bound, must be positive
+     * @return Random int
+     */
+    public int nextInt(int bound);
+
+
+    /**
+     * Uniformly distributed double between 0.0 (inclusive) and 1.0 (exclusive)
+     *
+     * @return Random double
+     */
+    public double nextDouble();
+
+
+    /**
+     * Uniformly distributed long, all 2^64 values possible
+     *
+     * @return Random long
+     */
+    public long nextLong();
+
+
+    /**
+     * The seed this generator was created with
+     *
+     * @return Seed
+     */
+    public long getSeed();
+
+
+    /**
+     * Write the state of the generator. A generator read back from it (see
+     * RandomSource.readState()) carries on with the same stream.
+     *
+     * @param out Where to write to
+     * @throws IOException If it can't be written
+     */
+    public void writeState(DataOutput out) throws IOException;
+}
@@ -21,13 +21,13 @@
 
 package sim;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.HashMap;
-import java.util.Map.Entry;
 
-import org.graphstream.graph.Edge;
+import org.pmw.tinylog.Level;
 import org.pmw.tinylog.Logger;
 
 import com.google.common.collect.Range;
@@ -35,8 +35,8 @@ import com.google.common.collect.Range;
 
 /**
  * Handles everything related to random generation, be it selecting a random
- * node, pair of agents, etc. Really a wrapper class for SecureRandom so that
- * all random choices are consistent across the code.
+ * node, pair of agents, etc. Really a wrapper class for a RandomGenerator so
+ * that all random choices are consistent across the code.
  *
  *
  * "Anyone who considers arithmetical methods of producing random digits is, of
@@ -48,40 +48,60 @@ public class RandomSource {
 
 
     ///////////////////////////////////////////////////////////////////////////
-    // PRIVATE ATTRIBUTES
+    // PUBLIC ENUM
     ///////////////////////////////////////////////////////////////////////////
 
 
-    private ExtendedGraph g;
+    public enum Generator {
 
+        /**
+         * Fast non-cryptographic generator, xoroshiro128+. This is the default.
+         */
+        FAST,
 
-    private SecureRandom sr;
+        /**
+         * SecureRandom SHA1PRNG from the SUN provider. What the simulator
+         * originally used, much slower. Opt-in for comparison with old results.
+         */
+        REFERENCE;
+    }
 
 
-    /*
-     * The algorithm and provider for SecureRandom. We set
-     * this make things as consistent as possible.
-     *
-     * From docs
-     *
-     * "The name of the pseudo-random number generation (PRNG) algorithm
-     * supplied by the SUN provider. This algorithm uses SHA-1 as the
-     * foundation of the PRNG. It computes the SHA-1 hash over a true-random
-     * seed value concatenated with a 64-bit counter which is incremented by 1
-     * for each operation. From the 160-bit SHA-1 output, only 64 bits are used."
-     *
-     * http://docs.oracle.com/javase/7/docs/technotes/guides/security/StandardNames.html#SecureRandom
-     * http://docs.oracle.com/javase/7/docs/technotes/guides/security/SunProviders.html#SUNProvider
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Poisson means below this are drawn by inversion
      */
-    private static final String PROVIDER = "SUN";
-    private static final String ALGORITHM = "SHA1PRNG";
+    private static final double POISSON_INVERSION_MAX = 10;
 
 
     /**
-     * Singleton instance, eager initialization. This is fine since we know we
-     * always need an instance.
+     * ln(k!) for k up to POISSON_INVERSION_MAX
      */
-    private static final RandomSource INSTANCE = new RandomSource();
+    private static final double[] LOG_FACTORIAL = new double[11];
+
+    static {
+        for (int k = 1; k < LOG_FACTORIAL.length; k++) {
+            LOG_FACTORIAL[k] = LOG_FACTORIAL[k - 1] + Math.log(k);
+        }
+    }
+
+
+    /**
+     * Population of the run, nodes and agents are chosen from it
+     */
+    private Population p;
+    private Topology topology;
+
+
+    private HashMap<Integer, Range<Double>> actionProbabilitySpread;
+
+
+    private RandomGenerator rng;
+    private Generator generator;
 
 
     private final int NUM_ACTIONS = 2;
@@ -90,140 +110,249 @@ public class RandomSource {
     private int numNodes;
 
 
+    /**
+     * Is debug logging on? Checked once per run, see logNodeSelected()
+     */
+    private boolean flag_debug;
+
+
+    /**
+     * Node selections that found no node able to serve the action. The time
+     * step is then wasted.
+     */
+    private long rejections;
+
+
+    /**
+     * Expected number of draws saved by picking only from nodes that can
+     * serve the action, compared to drawing from all nodes until one can
+     * (which is what node selection used to do).
+     */
+    private double rejectionsSaved;
+
+
     ///////////////////////////////////////////////////////////////////////////
     // PUBLIC METHODS
     ///////////////////////////////////////////////////////////////////////////
 
 
-    public void init(ExtendedGraph g) {
-        this.g = g;
-        this.numNodes = this.g.getNodeCount();
-
-        try {
-            sr = SecureRandom.getInstance(ALGORITHM, PROVIDER);
-
-            /*
-             * Force SecureRandom to seed itself.
-             *
-             * From Javadoc:
-             *
-             * "The returned SecureRandom object has not been seeded. To seed the
-             *  returned object, call the setSeed method. If setSeed is not
-             *  called, the first call to nextBytes will force the SecureRandom
-             *  object to seed itself."
-             */
-            byte[] bytes = new byte[64];
-            sr.nextBytes(bytes);
-        } catch (NoSuchAlgorithmException e) {
-            Logger.error(e);
-
-            /*
-             * We exit to prevent running on a machine with a different RNG that
-             * may give non-standard results. Fail loudly.
-             */
-            System.exit(-1);
-        } catch (NoSuchProviderException e) {
-            Logger.error(e);
-            System.exit(-1);
+    /**
+     * Set the population that random nodes and agents are chosen from. The
+     * generator is NOT reseeded here, call seed() first to give a run its own
+     * stream. If no generator has been seeded yet, a FAST one is seeded from
+     * system entropy.
+     *
+     * @param g Graph of the simulation, for its settings
+     * @param p Population of the run
+     */
+    public void init(ExtendedGraph g, Population p) {
+        this.p = p;
+        topology = p.getTopology();
+        numNodes = topology.numNodes();
+        actionProbabilitySpread = g.getActionProbabilitySpread();
+
+        rejections = 0;
+        rejectionsSaved = 0.0;
+        flag_debug = Logger.getLevel().ordinal() <= Level.DEBUG.ordinal();
+
+        if (rng == null) {
+            seed(Generator.FAST, entropySeed());
+        }
+    }
+
+
+    /**
+     * Create the generator that all random choices come from
+     *
+     * @param generator Which generator to use
+     * @param seed Seed for the generator. The same seed (and generator)
+     *             always gives the same stream of random choices.
+     */
+    public void seed(Generator generator, long seed) {
+        this.generator = generator;
+
+        switch (generator) {
+            case FAST:
+                rng = new Xoroshiro128PlusGenerator(seed);
+                break;
+            case REFERENCE:
+                rng = new SecureRandomGenerator(seed);
+                break;
         }
+
+        Logger.info("Random generator {0} seeded with {1}", generator, seed);
+    }
+
+
+    /**
+     * Write the state of the generator and the rejection counters, see
+     * readState()
+     *
+     * @param out Where to write to
+     * @throws IOException If it can't be written
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeByte(generator.ordinal());
+        rng.writeState(out);
+        out.writeLong(rejections);
+        out.writeDouble(rejectionsSaved);
+    }
+
+
+    /**
+     * Carry on from a state written by writeState(), with the same stream of
+     * random choices. Call after init(), which resets the rejection counters.
+     *
+     * @param in Where to read from
+     * @throws IOException If it can't be read
+     */
+    public void readState(DataInput in) throws IOException {
+        generator = Generator.values()[in.readByte()];
+
+        switch (generator) {
+            case FAST:
+                rng = Xoroshiro128PlusGenerator.readState(in);
+                break;
+            case REFERENCE:
+                rng = SecureRandomGenerator.readState(in);
+                break;
+        }
+
+        rejections = in.readLong();
+        rejectionsSaved = in.readDouble();
+    }
+
+
+    /**
+     * Seed of a single simulation run, derived from the seed of the whole
+     * simulation. Each run has a stream of its own, so the result of a run
+     * does not depend on which runs came before it, or on which thread it
+     * ran. Split first by number of agents, then by run, so that a run has
+     * the same seed whatever range of agents or number of runs it was part
+     * of, and can be replayed on its own.
+     *
+     * @param seed Seed of the simulation
+     * @param numAgents Number of agents of the run
+     * @param run Index of the run, from 0, among those of its number of agents
+     * @return Seed of the run
+     */
+    public static long runSeed(long seed, int numAgents, int run) {
+        long populationSeed = Xoroshiro128PlusGenerator.mix64(seed +
+                        numAgents * Xoroshiro128PlusGenerator.GOLDEN_GAMMA);
+
+        return Xoroshiro128PlusGenerator.mix64(populationSeed + (run + 1) *
+                                    Xoroshiro128PlusGenerator.GOLDEN_GAMMA);
+    }
+
+
+    /**
+     * A seed drawn from system entropy, for when the user does not set one
+     *
+     * @return Random seed
+     */
+    public static long entropySeed() {
+        return new SecureRandom().nextLong();
     }
 
 
     /**
      * Pick a random index of an agent in the node
      *
-     * @param n Node from which the agent should be picked from
+     * @param node Index of the node from which the agent should be picked
      * @return Randomly chosen index of an agent
      */
-    public int nextAgentIndex(ExtendedNode n) {
-        return sr.nextInt(n.getAgentCount());
+    public int nextAgentIndex(int node) {
+        return rng.nextInt(p.getAgentCount(node));
     }
 
 
     /**
      * Pick a random agent in the node
      *
-     * @param n Node from which the agent should be picked from
-     * @return Randomly chosen agent
+     * @param node Index of the node from which the agent should be picked
+     * @return Slot of the randomly chosen agent
      */
-    public Agent nextAgent(ExtendedNode n) {
-        return n.getAgent(sr.nextInt(n.getAgentCount()));
+    public int nextAgent(int node) {
+        return p.getAgent(node, rng.nextInt(p.getAgentCount(node)));
     }
 
 
     /**
-     * Get a pair of random agents from the given node. Agents are different.
-     * Method assumes that node has 2 or more agents.
+     * Get the indices of a pair of random agents from the given node. Agents
+     * are different. Method assumes that node has 2 or more agents.
      *
-     * @param n Node to choose agents from
-     * @return Array holding two different agents
+     * No allocation, the indices are written into the given array. The
+     * second index is drawn from the other n - 1 agents directly, so this
+     * always takes exactly two draws.
+     *
+     * @param node Index of the node to choose agents from
+     * @param pair Array of (at least) length 2 to hold the two indices
      */
-    public Agent[] nextAgentPair(ExtendedNode n) {
-        Agent agent_i;
-        Agent agent_j;
-        Agent[] agents = new Agent[2];
-        int agentCount = n.getAgentCount();
-
-        while (true) {
-            agent_i = n.getAgent(sr.nextInt(agentCount));
-            agent_j = n.getAgent(sr.nextInt(agentCount));
+    public void nextAgentPair(int node, int[] pair) {
+        int agentCount = p.getAgentCount(node);
 
-            if (agent_i.getAID() != agent_j.getAID()) {
-                agents[0] = agent_i;
-                agents[1] = agent_j;
+        int i = rng.nextInt(agentCount);
+        int j = rng.nextInt(agentCount - 1);
 
-                return agents;
-            }
+        // Shift past i, so j is uniform over every index except i
+        if (j >= i) {
+            j++;
         }
+
+        pair[0] = i;
+        pair[1] = j;
     }
 
 
     /**
      * Pick a random leaving (outgoing) edge from the node
      *
-     * @param n Node to choose leaving edge from
-     * @return Edge Outgoing edge
+     * @param node Index of the node to choose leaving edge from
+     * @return Leaving edge of the node, between 0 and its out degree - 1. See
+     *         Topology.neighbour().
      */
-    public Edge nextLeavingEdge(ExtendedNode n) {
-        // NOTE: n.getLeavingEdgeSet().size() returns getOutDegree
-
-        // Get leaving edge works based off index, not object
-        return n.getLeavingEdge(sr.nextInt(n.getOutDegree()));
+    public int nextLeavingEdge(int node) {
+        return rng.nextInt(topology.outDegree(node));
     }
 
 
     /**
      * Pick a random node in the graph
      *
-     * @return ExtendedNode Random node
+     * @return Index of a random node
      */
-    public ExtendedNode nextNode() {
-        return g.getNode(sr.nextInt(numNodes));
+    public int nextNode() {
+        return rng.nextInt(numNodes);
     }
 
 
     /**
      * Pick a random node in the graph factoring in the constraints of the
-     * action.
+     * action. Only nodes that can serve the action are considered, so this
+     * takes a single draw.
      *
      * @param action Which action is this node going to be used for? Interact
      *               or traverse?
-     * @return ExtendedNode Random node
+     * @return Index of a random node, -1 if no node can serve the action
      */
-    public ExtendedNode nextNode(int action) {
-        while (true) {
-            ExtendedNode n = nextNode();
-
-            if (action == TimeStep.ACTION_INTERACT && n.getAgentCount() >= 2) {
-                Logger.debug("ACTION_INTERACT: Node selected: " + n);
-                return n;
-            }
-            else if (action == TimeStep.ACTION_TRAVERSE && n.getAgentCount() >= 1
-                                                        && n.getOutDegree() >= 1) {
-                Logger.debug("ACTION_TRAVERSE: Node selected: " + n);
-                return n;
-            }
+    public int nextNode(int action) {
+        NodeIndexSet nodes = action == TimeStep.ACTION_INTERACT ?
+                                       p.getInteractNodes() :
+                                       p.getTraverseNodes();
+        int eligible = nodes.size();
+
+        if (eligible == 0) {
+            rejections++;
+            return -1;
         }
+
+        // Draws a rejection loop over all nodes would have thrown away
+        rejectionsSaved += (double) (numNodes - eligible) / eligible;
+
+        int node = nodes.get(rng.nextInt(eligible));
+        logNodeSelected(action, node);
+
+        return node;
     }
 
 
@@ -231,42 +360,34 @@ public class RandomSource {
      * Choose node based on the number of agents. So more agents in a node,
      * higher probability, in proportion to size.
      *
-     * Make sure that the selected node has at least one agent, otherwise a
-     * time-step gets wasted with no action
+     * Only nodes that can serve the action are considered, so this takes a
+     * single draw.
      *
      * @param action Which action is this node going to be used for? Interact
      *               or traverse?
-     * @return Random weighted node
+     * @return Index of a random weighted node, -1 if no node can serve the
+     *         action
      */
-    public ExtendedNode nextNodeWeighted(int action) {
-        ExtendedNode n = null;
-        HashMap<String, Range<Double>> map = g.agentProbabilitySpread();
+    public int nextNodeWeighted(int action) {
+        FenwickTree counts = action == TimeStep.ACTION_INTERACT ?
+                                       p.getInteractCounts() :
+                                       p.getTraverseCounts();
+        long eligible = counts.total();
+
+        if (eligible == 0) {
+            rejections++;
+            return -1;
+        }
 
-        // Node picked has to meet needs of action, hence while true
-        while (true) {
-            double r = sr.nextDouble();
-
-            // Find the node
-            for (Entry<String, Range<Double>> entry: map.entrySet()) {
-                if (entry.getValue().contains(r)) {
-                    n = g.getNode(entry.getKey());
-                    break;
-                }
-            }
+        // Draws a rejection loop over all agents would have thrown away
+        rejectionsSaved += (double) (p.getAgentCounts().total() - eligible) /
+                           eligible;
 
+        // Pick an agent at random, the node it is in is the one selected
+        int node = counts.find(rng.nextInt((int) eligible));
+        logNodeSelected(action, node);
 
-            if (action == TimeStep.ACTION_INTERACT && n.getAgentCount() >= 2) {
-                Logger.debug("ACTION_INTERACT: Node selected: " + n);
-                return n;
-            }
-            else if (action == TimeStep.ACTION_TRAVERSE && n.getAgentCount() >= 1
-                                                        && n.getOutDegree() >= 1) {
-                Logger.debug("ACTION_TRAVERSE: Node selected: " + n);
-                return n;
-            }
-
-            Logger.trace("Selected node invalid for action - {0}", n);
-        }
+        return node;
     }
 
 
@@ -278,7 +399,7 @@ public class RandomSource {
     public int nextAction() {
         // Determine the action. Flip a coin, pick which action, two agents
         // interact, or one moves to another node. 50/50 chance
-        return sr.nextInt(NUM_ACTIONS);
+        return rng.nextInt(NUM_ACTIONS);
     }
 
 
@@ -289,8 +410,8 @@ public class RandomSource {
      * @return int Random action
      */
     public int nextActionWeighted() {
-        double r = sr.nextDouble();
-        HashMap<Integer, Range<Double>> map = g.getActionProbabilitySpread();
+        double r = rng.nextDouble();
+        HashMap<Integer, Range<Double>> map = actionProbabilitySpread;
 
         // Find the action in which the random double r falls within
         if (map.get(TimeStep.ACTION_INTERACT).contains(r)) {
@@ -308,17 +429,104 @@ public class RandomSource {
      * @see java.util.Random#nextInt()
      */
     public int nextInt(int range) {
-        return sr.nextInt(range);
+        return rng.nextInt(range);
     }
 
 
     /**
-     * Wrapper for nextInt
+     * Wrapper for nextDouble
      *
      * @see java.util.Random#nextDouble()
      */
     public double nextDouble() {
-        return sr.nextDouble();
+        return rng.nextDouble();
+    }
+
+
+    /**
+     * Random number of events of a Poisson process, given the mean. Small
+     * means are drawn by inversion, larger ones by transformed rejection
+     * (Hormann's PTRS), in O(1) either way.
+     *
+     * @param mean Mean number of events, 0 or more
+     * @return Number of events
+     */
+    public long nextPoisson(double mean) {
+        if (mean < POISSON_INVERSION_MAX) {
+            double p = Math.exp(-mean);
+            double u = rng.nextDouble();
+            long k = 0;
+
+            while (u > p && p > 0) {
+                u -= p;
+                k++;
+                p *= mean / k;
+            }
+
+            return k;
+        }
+
+        double logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * Math.sqrt(mean);
+        double a = -0.059 + 0.02483 * b;
+        double invAlpha = 1.1239 + 1.1328 / (b - 3.4);
+        double vr = 0.9277 - 3.6224 / (b - 2);
+
+        while (true) {
+            double u = rng.nextDouble() - 0.5;
+            double v = rng.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + mean + 0.43);
+
+            if (us >= 0.07 && v <= vr) {
+                return k;
+            }
+
+            if (k < 0 || (us < 0.013 && v > us)) {
+                continue;
+            }
+
+            if (Math.log(v) + Math.log(invAlpha) - Math.log(a / (us * us) + b)
+                <= -mean + k * logMean - logFactorial(k)) {
+                return k;
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * ln(k!), exact for small k, by Stirling's series otherwise
+     */
+    private static double logFactorial(long k) {
+        if (k < LOG_FACTORIAL.length) {
+            return LOG_FACTORIAL[(int) k];
+        }
+
+        double x = k;
+        double x2 = x * x;
+
+        return x * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI * x) +
+               (1 - (1 - 2 / (7 * x2)) / (30 * x2)) / (12 * x);
+    }
+
+
+
+    private void logNodeSelected(int action, int n) {
+        if (!flag_debug) {
+            return;
+        }
+
+        if (action == TimeStep.ACTION_INTERACT) {
+            Logger.debug("ACTION_INTERACT: Node selected: {0}", n);
+        }
+        else {
+            Logger.debug("ACTION_TRAVERSE: Node selected: {0}", n);
+        }
     }
 
 
@@ -327,7 +535,34 @@ public class RandomSource {
     ///////////////////////////////////////////////////////////////////////////
 
 
-    public static RandomSource getInstance() {
-        return INSTANCE;
+    /**
+     * Node selections, since init(), that found no node able to serve the
+     * action
+     *
+     * @return Rejection count
+     */
+    public long getRejections() {
+        return rejections;
+    }
+
+
+    /**
+     * Expected number of draws, since init(), that selecting only from nodes
+     * able to serve the action has saved over rejection sampling
+     *
+     * @return Saved rejection count
+     */
+    public double getRejectionsSaved() {
+        return rejectionsSaved;
+    }
+
+
+    /**
+     * The seed of the current generator
+     *
+     * @return Seed
+     */
+    public long getSeed() {
+        return rng.getSeed();
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * RunEngine.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+
+/**
+ * Steps a single simulation run forward, and keeps its stats. TimeStep
+ * simulates every agent, other engines may get to the same results another
+ * way. The Simulator drives them all alike.
+ *
+ */
+public interface RunEngine {
+
+
+    /**
+     * A single step of the simulation (tick or heart beat)
+     */
+    public void step();
+
+
+    /**
+     * Step until the leader and all agents believe election is complete, or
+     * maxSteps steps have been taken in all. An engine may get there without
+     * going through every step, as long as the run is the same in
+     * distribution.
+     *
+     * @param maxSteps Max number of steps of the run
+     */
+    public void runUntilComplete(int maxSteps);
+
+
+    /**
+     * Simulation run complete, cleanup
+     */
+    public void end();
+
+
+    /**
+     * Does the leader believe election is complete?
+     *
+     * @return True if so, false otherwise
+     */
+    public boolean isFlag_leaderElectionComplete();
+
+
+    /**
+     * Do all agents believe election is complete?
+     *
+     * @return True if so, false otherwise
+     */
+    public boolean isFlag_allElectionComplete();
+
+
+    /**
+     * Stats of this run. Complete once end() has been called.
+     *
+     * @return Simulation run data
+     */
+    public SimulatorRun getSimRun();
+}
@@ -0,0 +1,192 @@
+/*
+ * SecureRandomGenerator.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.SecureRandom;
+
+import org.pmw.tinylog.Logger;
+
+
+/**
+ * Reference generator, SecureRandom with the SHA1PRNG algorithm of the SUN
+ * provider. This is what the simulator originally ran on. Much slower than
+ * Xoroshiro128PlusGenerator, but kept for comparison against older results.
+ *
+ */
+public class SecureRandomGenerator implements RandomGenerator {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /*
+     * The algorithm and provider for SecureRandom. We set
+     * this make things as consistent as possible.
+     *
+     * From docs
+     *
+     * "The name of the pseudo-random number generation (PRNG) algorithm
+     * supplied by the SUN provider. This algorithm uses SHA-1 as the
+     * foundation of the PRNG. It computes the SHA-1 hash over a true-random
+     * seed value concatenated with a 64-bit counter which is incremented by 1
+     * for each operation. From the 160-bit SHA-1 output, only 64 bits are used."
+     *
+     * http://docs.oracle.com/javase/7/docs/technotes/guides/security/StandardNames.html#SecureRandom
+     * http://docs.oracle.com/javase/7/docs/technotes/guides/security/SunProviders.html#SUNProvider
+     */
+    private static final String PROVIDER = "SUN";
+    private static final String ALGORITHM = "SHA1PRNG";
+
+
+    private final long seed;
+
+
+    private SecureRandom sr;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public SecureRandomGenerator(long seed) {
+        this.seed = seed;
+
+        try {
+            sr = SecureRandom.getInstance(ALGORITHM, PROVIDER);
+
+            /*
+             * Seed before first use. SHA1PRNG then relies only on this seed,
+             * and not on system entropy, which makes the sequence
+             * reproducible.
+             *
+             * From Javadoc:
+             *
+             * "The returned SecureRandom object has not been seeded. To seed the
+             *  returned object, call the setSeed method. If setSeed is not
+             *  called, the first call to nextBytes will force the SecureRandom
+             *  object to seed itself."
+             */
+            sr.setSeed(seed);
+        } catch (NoSuchAlgorithmException e) {
+            Logger.error(e);
+
+            /*
+             * We exit to prevent running on a machine with a different RNG that
+             * may give non-standard results. Fail loudly.
+             */
+            System.exit(-1);
+        } catch (NoSuchProviderException e) {
+            Logger.error(e);
+            System.exit(-1);
+        }
+    }
+
+
+    private SecureRandomGenerator(long seed, SecureRandom sr) {
+        this.seed = seed;
+        this.sr = sr;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Read back a generator written by writeState()
+     *
+     * @param in Where to read from
+     * @return Generator, in the state it was written in
+     * @throws IOException If it can't be read
+     */
+    public static SecureRandomGenerator readState(DataInput in)
+                                                    throws IOException {
+        long seed = in.readLong();
+        byte[] state = new byte[in.readInt()];
+        in.readFully(state);
+
+        ObjectInputStream ois = new ObjectInputStream(
+                                        new ByteArrayInputStream(state));
+
+        try {
+            return new SecureRandomGenerator(seed,
+                                             (SecureRandom) ois.readObject());
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            ois.close();
+        }
+    }
+
+
+    /**
+     * SHA1PRNG has no state to get at, other than through serialization
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(sr);
+        oos.close();
+
+        out.writeLong(seed);
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+
+    @Override
+    public int nextInt(int bound) {
+        return sr.nextInt(bound);
+    }
+
+
+    @Override
+    public double nextDouble() {
+        return sr.nextDouble();
+    }
+
+
+    @Override
+    public long nextLong() {
+        return sr.nextLong();
+    }
+
+
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -21,14 +21,18 @@
 
 package sim;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.RecursiveAction;
 
 import org.pmw.tinylog.Level;
 import org.pmw.tinylog.Logger;
 
 import sim.AgentDistribution.Distribution;
 import sim.GraphGeneratorSource.GraphType;
+import sim.RandomSource.Generator;
 
 import com.google.common.collect.Range;
 
@@ -60,6 +64,29 @@ public class Simulator {
     }
 
 
+    public enum Engine {
+
+        /**
+         * Every agent is simulated, see TimeStep
+         */
+        AGENT,
+
+        /**
+         * Agents are counted, only candidates for leader are simulated. Only
+         * for well-mixed populations, all agents in a single dead end node.
+         * See CountTimeStep.
+         */
+        COUNT,
+
+        /**
+         * Agents are counted more coarsely still, and many interactions are
+         * drawn at once. Approximate, for huge well-mixed populations. See
+         * LeapTimeStep.
+         */
+        LEAP;
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////
     // PROTECTED ENUM
     ///////////////////////////////////////////////////////////////////////////
@@ -79,6 +106,18 @@ public class Simulator {
     }
 
 
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * System property that picks the shard of the sweep to execute, as
+     * index/count, see shard()
+     */
+    public static final String SHARD_PROPERTY = "sim.shard";
+
+
     ///////////////////////////////////////////////////////////////////////////
     // PRIVATE ATTRIBUTES
     ///////////////////////////////////////////////////////////////////////////
@@ -102,6 +141,12 @@ public class Simulator {
     private boolean flag_charts = false;
 
 
+    /**
+     * Save the markers chart as a PNG, without displaying it
+     */
+    private boolean flag_saveChart = false;
+
+
     /**
      * Automatic graph generation flag
      */
@@ -139,10 +184,63 @@ public class Simulator {
 
 
     /**
-     * Holds all data about entire simulation. Will be exported to JSON at the
-     * very end
+     * Has the user set the seed? If not, one is drawn from system entropy
+     */
+    private boolean flag_seed = false;
+
+
+    /**
+     * Seed of the random generator. Recorded in the metadata so that the
+     * simulation can be reproduced.
      */
-    private static ArrayList<SimulatorRun> runData = new ArrayList<SimulatorRun>();
+    private long seed;
+
+
+    /**
+     * Run replayed on its own, and its number of agents, -1 if all runs are
+     * executed
+     */
+    private int replayRun = -1;
+    private int replayNumAgents;
+
+
+    /**
+     * Shard of the sweep this simulation executes, of how many. Runs are
+     * dealt out to the shards in turn, see execute(). A single shard, 0 of
+     * 1, is the whole sweep.
+     */
+    private int shardIndex = 0;
+    private int shardCount = 1;
+
+
+    /**
+     * Least number of seconds between two checkpoints of the progress of the
+     * simulation, 0 for none
+     */
+    private int checkpointInterval = 60;
+
+
+    /**
+     * Checkpoint this simulation resumes from, null if it starts afresh, and
+     * the logs directory it is in
+     */
+    private SimulatorCheckpoint resume = null;
+    private String resumeDirName;
+
+
+    /**
+     * Number of worker threads that runs are spread over. 1 runs them one
+     * after another on the calling thread.
+     */
+    private int workers = 1;
+
+
+    /**
+     * Everything this simulation owns, that must not be shared with other
+     * simulations in the same JVM. Its sink takes the data of each run as it
+     * completes.
+     */
+    private final SimulatorContext ctx;
 
 
     /**
@@ -153,11 +251,15 @@ public class Simulator {
 
     private ExtendedGraph g;
     private TinylogProperties tinylog;
-    private GraphVis gv = GraphVis.getInstance();
-    private RandomSource rs = RandomSource.getInstance();
+    private GraphVis gv;
+    private RandomSource rs;
     private AgentDistribution dist;
     private SimulatorMetaData smd;
+    private MarkersChart mc;
     private ActionSelection as = ActionSelection.NON_WEIGHTED;
+    private Engine engine = Engine.AGENT;
+    private double leapTolerance = 0.03;
+    private Generator generator = Generator.FAST;
     private GraphType gt = GraphType.CUSTOM;
     private double interactProbability = 0.50;
     private double traversalProbability = 0.50;
@@ -189,6 +291,8 @@ public class Simulator {
         // Init logging before anything else
         tinylog = new TinylogProperties(logLevel);
         smd = new SimulatorMetaData();
+        ctx = new SimulatorContext();
+        rs = ctx.getRandomSource();
 
         this.g = g;
         this.runs = runs;
@@ -232,61 +336,207 @@ public class Simulator {
     }
 
 
-    private void execute(int numAgents) {
-        g.setNumAgents(numAgents);
-
-        for (int y = 0; y < runs; y++) {
-            Logger.info("----------------------------------------------------");
-            Logger.info("STARTING RUN: " + (y + 1));
+    /**
+     * Execute all runs, one after another on this thread
+     *
+     * @param firstRun Index of the first run to execute
+     * @param totalRuns Number of runs of this shard
+     */
+    private void executeSequential(int firstRun, int totalRuns) {
+        // The graph's own population, which the visualization shows
+        g.reset();
+        Population p = g.getPopulation();
 
+        for (int run = firstRun; run < totalRuns; run++) {
+            ctx.getRunSink().add(run, execute(p, rs, dist, run));
+        }
+    }
 
-            ///////////////////////////////////////////////////////////////////
-            // INIT OPS
 
+    /**
+     * Execute all runs on a pool of worker threads. Each worker has a
+     * population and a random source of its own, over the shared topology of
+     * the graph. Results go to the sink in run
+     * order, and since every run is seeded on its own, they are the same as
+     * those of executeSequential().
+     *
+     * @param firstRun Index of the first run to execute
+     * @param totalRuns Number of runs of this shard
+     */
+    private void executeParallel(int firstRun, int totalRuns) {
+        AtomicInteger nextRun = new AtomicInteger(firstRun);
 
-            /*
-             * Init helper classes
-             */
-            rs.init(g);
+        // Built here, before the workers start, then only read
+        final Topology topology = g.getTopology();
 
-            if (flag_vis) {
-                gv.init(g);
+        ThreadLocal<Worker> worker = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker(topology);
             }
+        };
 
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        RunTask[] tasks = new RunTask[workers];
 
-            /*
-             * Create and distribute the agents
-             */
-            dist.init(g);
-            dist.execute();
+        for (int i = 0; i < workers; i++) {
+            tasks[i] = new RunTask(nextRun, totalRuns, worker);
+            pool.execute(tasks[i]);
+        }
 
+        for (RunTask task : tasks) {
+            task.join();
+        }
 
-            ///////////////////////////////////////////////////////////////////
+        pool.shutdown();
+    }
 
 
-            TimeStep ts = new TimeStep(g, termA, termB, flag_vis, as);
-            for (int i = 0; i < maxTimeSteps; i++) {
-                ts.step();
+    /**
+     * Execute a single run
+     *
+     * @param p Population to run on
+     * @param rs Random source for the run, seeded here
+     * @param dist Agent distribution, using rs
+     * @param shardRun Index of the run, from 0, among those of this shard
+     *                 (or 0 when replaying a run)
+     * @return Data of the completed run
+     */
+    private SimulatorRun execute(Population p, RandomSource rs,
+                                               AgentDistribution dist,
+                                               int shardRun) {
+        // Index of the run across all numbers of agents
+        int run = shardIndex + shardRun * shardCount;
+        int y = replayRun >= 0 ? replayRun : run % runs;
+        p.setNumAgents(numAgents.lowerEndpoint() + run / runs);
+        long runSeed = RandomSource.runSeed(seed, p.getNumAgents(), y);
 
-                // Checking for infection complete as well causes problems.
-                // With the way the algo is structured, if leader declares
-                // election complete before it really happens, infection no
-                // longer occurs. Sim then runs till max time step for no reason
+        Logger.info("----------------------------------------------------");
+        Logger.info("STARTING RUN: " + (y + 1));
 
-                // TODO: This check should be inside TimeStep, which sends a
-                //       single signal to Simulator to exit
-                if (ts.isFlag_leaderElectionComplete() &&
-                    ts.isFlag_allElectionComplete()) {
-                    Logger.info("STEP: {0}; Cutting off simulation - all " +
-                                "actions complete", i);
-                    break;
-                }
-            }
 
-            ts.end();
-            Logger.info("ENDING RUN: " + (y + 1));
-            Logger.info("----------------------------------------------------");
+        ///////////////////////////////////////////////////////////////////////
+        // INIT OPS
+
+
+        /*
+         * Init helper classes
+         */
+        rs.seed(generator, runSeed);
+
+        // Agents need not be distributed, they are all in the same node
+        if (engine == Engine.COUNT) {
+            return execute(new CountTimeStep(p.getNumAgents(), termA, termB,
+                                                                rs), y,
+                                                                runSeed);
         }
+        else if (engine == Engine.LEAP) {
+            return execute(new LeapTimeStep(p.getNumAgents(), termA, termB,
+                                            leapTolerance, rs), y, runSeed);
+        }
+
+        rs.init(g, p);
+
+        if (flag_vis) {
+            gv.init(g);
+        }
+
+
+        /*
+         * Create and distribute the agents
+         */
+        dist.init(g, p);
+        dist.execute();
+
+
+        ///////////////////////////////////////////////////////////////////////
+
+
+        return execute(new TimeStep(g, p, termA, termB, as, rs, gv), y,
+                                                                     runSeed);
+    }
+
+
+    /**
+     * Step a run until it completes, or the max number of time steps is hit
+     *
+     * @param ts Engine of the run
+     * @param y Index of the run, for its number of agents
+     * @param runSeed Seed the run was given
+     * @return Data of the completed run
+     */
+    private SimulatorRun execute(RunEngine ts, int y, long runSeed) {
+        ts.runUntilComplete(maxTimeSteps);
+
+        ts.end();
+        Logger.info("ENDING RUN: " + (y + 1));
+        Logger.info("----------------------------------------------------");
+
+        SimulatorRun simRun = ts.getSimRun();
+        simRun.setRun(y);
+        simRun.setSeed(runSeed);
+
+        return simRun;
+    }
+
+
+    /**
+     * Can the COUNT and LEAP engines run this simulation? That is, are all agents in a
+     * single node they can't leave, so that every step is an interaction
+     * between any two agents?
+     *
+     * @return True if the population is well-mixed, false otherwise
+     */
+    private boolean isWellMixed() {
+        int node = -1;
+
+        if (g.getNumNodes() == 1) {
+            node = 0;
+        }
+        else if (g.getAgentDistribution() == Distribution.SINGLE) {
+            node = g.getNodeIndex(g.getSINGLE_nodeID());
+        }
+
+        return node >= 0 && g.getTopology().outDegree(node) == 0 &&
+               !flag_vis && termB >= 0;
+    }
+
+
+    /**
+     * Checkpoint of this simulation, with its settings filled in, for the
+     * sink to save its progress to
+     */
+    private SimulatorCheckpoint checkpoint() {
+        SimulatorCheckpoint c = new SimulatorCheckpoint();
+
+        c.setTimestamp(tinylog.getTimestamp());
+        c.setNumAgents(numAgents.lowerEndpoint(), numAgents.upperEndpoint());
+        c.setRuns(runs);
+        c.setTermA(termA);
+        c.setTermB(termB);
+        c.setMaxTimeSteps(maxTimeSteps);
+        c.setGraphType(gt);
+        c.setNumNodes(g.getNumNodes());
+        c.setTopology(g.getTopology());
+        c.setNodeSelection(g.getNodeSelection());
+        c.setActionProbability(as, interactProbability, traversalProbability);
+        c.setAgentDistribution(g.getAgentDistribution());
+
+        if (g.getAgentDistribution() == Distribution.SINGLE) {
+            c.setAgentDistSINGLE_nodeID(g.getSINGLE_nodeID());
+        }
+
+        c.setEngine(engine);
+
+        if (engine == Engine.LEAP) {
+            c.setLeapTolerance(leapTolerance);
+        }
+        c.setGenerator(generator);
+        c.setSeed(seed);
+        c.setShard(shardIndex, shardCount);
+        c.setDataSaved(flag_saveData);
+
+        return c;
     }
 
 
@@ -300,108 +550,128 @@ public class Simulator {
         smd.setRuns(runs);
         smd.setInteractProbability(interactProbability);
         smd.setTraversalProbability(traversalProbability);
-        smd.setNumNodes(g.getNodeCount());
+        smd.setNumNodes(g.getNumNodes());
+        smd.setTopology(g.getTopology());
         smd.setGraphType(gt);
         smd.setNodeSelection(g.getNodeSelection());
         smd.setAgentDistribution(g.getAgentDistribution());
         smd.setNumAgents(numAgents);
+        smd.setGenerator(generator);
+        smd.setEngine(engine);
 
-        if (g.getAgentDistribution() == Distribution.SINGLE) {
-            smd.setAgentDistSINGLE_nodeID(g.getSINGLE_nodeID());
+        if (engine == Engine.LEAP) {
+            smd.setLeapTolerance(leapTolerance);
         }
+        smd.setSeed(seed);
 
+        if (resume != null) {
+            smd.setResumedFrom(resumeDirName);
+        }
 
-        // Rest of stats
-
-        double avg_infection_level = 0.0;
-        double leader_error = 0.0;
+        if (replayRun >= 0) {
+            smd.setReplayedRun(replayRun);
+        }
 
-        int leaderOverTaken = 0;
-        int infectionIncomplete = 0;
+        if (shardCount > 1) {
+            smd.setShard(shardIndex, shardCount);
+        }
 
-        // 3 types of data points
-        int totalRuns = (numAgents.upperEndpoint() - numAgents.lowerEndpoint()) * runs;
-        int maxItems = totalRuns * 3;
-        MarkersChart mc = new MarkersChart(maxItems, tinylog.getDirName(),
-                                                     tinylog.getTimestamp());
+        if (g.getAgentDistribution() == Distribution.SINGLE) {
+            smd.setAgentDistSINGLE_nodeID(g.getSINGLE_nodeID());
+        }
 
 
-        for (SimulatorRun r : runData) {
-            int nAgents = r.getNumAgents();
-            int infectionComp = r.getInfectionCompleteInteractions();
-            int leaderElecComp = r.getLeaderElectionCompleteInteractions();
-            int allElecComp = r.getAllElectionCompleteInteractions();
+        // Rest of stats, computed as the runs completed
+        SimulatorRunSink sink = ctx.getRunSink();
 
+        // No chart, and so no chart classes loaded, unless asked for
+        if (mc != null) {
+            // Must come before chart display, exception thrown otherwise
+            mc.save();
 
-            // If the leader never calls election complete, something went wrong
-            if (leaderElecComp == 0) {
-                leaderOverTaken++;
+            if (flag_charts) {
+                mc.display();
             }
+        }
 
-            // Leader calls election complete BEFORE 100% infection
-            if (infectionComp > leaderElecComp &&
-                                leaderElecComp != 0 &&
-                                infectionComp != 0) {
-                leader_error++;
-            }
 
-            // If the infection complete step is zero, means it never happened,
-            // therefore, leader is wrong by default
-            if (infectionComp == 0) {
-                leader_error++;
-                infectionIncomplete++;
-            }
+        smd.setAvgInfectionLevel(sink.getAvgInfectionLevel());
+        smd.setAvgLeaderError(sink.getAvgLeaderError());
+        smd.setTotalRuns(sink.getTotalRuns());
 
 
-            avg_infection_level += r.getInfections() / (double) nAgents;
+        JSONUtil.writeJSON(tinylog.getDirName(), "metadata",
+                                                 tinylog.getTimestamp(),
+                                                 smd,
+                                                 true);
 
 
-            // TODO: interaction or step?
-            mc.addDataPoint(nAgents, infectionComp);
-            mc.addDataPointLeader(nAgents, leaderElecComp);
-            mc.addDataPointAll(nAgents, allElecComp);
+        if (g.isImplicit()) {
+            // No nodes or edges to write
+            Logger.info("Implicit graph - NOT written to disk");
         }
+        else {
+            GraphIO.writeGraph(g, tinylog.getDirName(), tinylog.getTimestamp());
+        }
+    }
 
-//        System.out.println("LEADER OVER TAKEN:" + leaderOverTaken);
-//        System.out.println("INFECTION INCOMPLETE:" + infectionIncomplete);
-
-        // Must come before chart display, exception thrown otherwise
-        mc.save();
 
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ///////////////////////////////////////////////////////////////////////////
 
-        if (flag_charts) {
-            mc.display();
-        }
 
+    /**
+     * What each worker thread of a parallel execution needs of its own
+     */
+    private class Worker {
+        private final Population p;
+        private final RandomSource rs = new RandomSource();
+        private final AgentDistribution dist = new AgentDistribution(rs, null);
 
-        smd.setAvgInfectionLevel((avg_infection_level / totalRuns) * 100.0);
-        smd.setAvgLeaderError((leader_error / totalRuns) * 100.0);
-        smd.setTotalRuns(totalRuns);
+        private Worker(Topology topology) {
+            p = new Population(topology);
+        }
+    }
 
 
-        JSONUtil.writeJSON(tinylog.getDirName(), "metadata",
-                                                 tinylog.getTimestamp(),
-                                                 smd,
-                                                 true);
+    /**
+     * Executes runs until none are left. Runs are handed out one at a time,
+     * in run order, from a shared counter. A worker takes the next one as
+     * soon as it is idle, as run lengths vary wildly. Handing them out in
+     * order keeps the runs waiting in the sink for an earlier one few.
+     */
+    private class RunTask extends RecursiveAction {
 
-        if (flag_saveData) {
-            JSONUtil.writeJSON(tinylog.getDirName(),
-                               "data", tinylog.getTimestamp(),
-                               runData, false);
-        }
+        private static final long serialVersionUID = 1L;
 
+        private final AtomicInteger nextRun;
+        private final int totalRuns;
+        private final ThreadLocal<Worker> worker;
 
-        GraphIO.writeGraph(g, tinylog.getDirName(), tinylog.getTimestamp());
-    }
 
+        /**
+         * @param nextRun Index of the next run to be handed out
+         * @param totalRuns Number of runs of this shard
+         * @param worker State of the current worker thread
+         */
+        private RunTask(AtomicInteger nextRun, int totalRuns,
+                                               ThreadLocal<Worker> worker) {
+            this.nextRun = nextRun;
+            this.totalRuns = totalRuns;
+            this.worker = worker;
+        }
 
-    ///////////////////////////////////////////////////////////////////////////
-    // PROTECTED METHODS
-    ///////////////////////////////////////////////////////////////////////////
 
+        @Override
+        protected void compute() {
+            Worker w = worker.get();
 
-    protected static ArrayList<SimulatorRun> getSimData() {
-        return runData;
+            int run;
+            while ((run = nextRun.getAndIncrement()) < totalRuns) {
+                ctx.getRunSink().add(run, execute(w.p, w.rs, w.dist, run));
+            }
+        }
     }
 
 
@@ -417,15 +687,17 @@ public class Simulator {
         Logger.info("Simulation SETTINGS" + toString());
 
         g.setNullAttributesAreErrors(true);
-        dist = new AgentDistribution(flag_vis);
 
         if (flag_vis) {
+            gv = ctx.vis();
             gv.init(g);
             gv.display();
         }
 
+        dist = new AgentDistribution(rs, gv);
+
         if (flag_generateGraph) {
-            GraphGeneratorSource.getInstance().generateGraph(g);
+            ctx.getGraphGeneratorSource().generateGraph(g);
         }
 
 
@@ -446,7 +718,7 @@ public class Simulator {
             Logger.warn("The graph has a dead END");
         }
 
-        if (g.getNodeCount() == 1) {
+        if (g.getNumNodes() == 1) {
             Logger.warn("Single node graph - no traverse actions allowed");
         }
 
@@ -455,15 +727,127 @@ public class Simulator {
             g.setActionProbabilitySpread(actionProbabilitySpread());
         }
 
+        // Settle the graph's settings, from here on runs only read the graph
+        dist.checkSettings(g);
+
+        if (engine != Engine.AGENT && !isWellMixed()) {
+            Logger.warn(engine + " engine needs all agents in a single " +
+                        "dead end node, no visualization and term B >= 0 - " +
+                        "using AGENT engine");
+            engine = Engine.AGENT;
+        }
+
+
+        /*
+         * Seed once for the whole simulation. Each run derives a seed of its
+         * own from this one, see RandomSource.runSeed()
+         */
+        if (resume != null) {
+            seed = resume.getSeed();
+        }
+        else if (!flag_seed) {
+            seed = RandomSource.entropySeed();
+        }
+
+        String shardProperty = System.getProperty(SHARD_PROPERTY);
+
+        if (shardCount == 1 && shardProperty != null) {
+            shard(shardProperty);
+        }
+
+        if (shardCount > 1 && (!flag_seed || replayRun >= 0)) {
+            Logger.error("Shards need the same seed, set with seed(), and " +
+                         "can't replay a run");
+            System.exit(-1);
+        }
+
+        if (replayRun >= 0) {
+            if (!flag_seed || resume != null) {
+                Logger.error("Replay needs the seed of the simulation the " +
+                             "run was part of, and can't resume");
+                System.exit(-1);
+            }
+
+            // A single run, the one given, see execute()
+            numAgents = Range.closedOpen(replayNumAgents, replayNumAgents + 1);
+            runs = 1;
+            Logger.info("Replaying run {0} of {1} agents", replayRun,
+                        replayNumAgents);
+        }
+
 
         // TODO: range types - closed, closeOpen, etc
         int lower = numAgents.lowerEndpoint();
         int upper = numAgents.upperEndpoint();
+        int totalRuns = (upper - lower) * runs;
+
+        // This shard's runs, the rest go to the other shards
+        int shardRuns = 0;
+        if (totalRuns > shardIndex) {
+            shardRuns = (totalRuns - shardIndex + shardCount - 1) / shardCount;
+        }
+
+        if (shardCount > 1) {
+            Logger.info("Shard {0} of {1} - {2} of {3} runs", shardIndex,
+                        shardCount, shardRuns, totalRuns);
+        }
 
-        for (int y = lower; y < upper; y++) {
-            execute(y);
+        if (workers > 1 && flag_vis) {
+            Logger.warn("Visualization is ON - runs will NOT be parallel");
+            workers = 1;
         }
 
+        SimulatorRunSink sink = ctx.getRunSink();
+
+        if (flag_charts || flag_saveChart) {
+            // 3 types of data points
+            mc = new MarkersChart(totalRuns * 3, tinylog.getDirName(),
+                                                 tinylog.getTimestamp());
+            sink.setMarkersChart(mc);
+        }
+
+        if (flag_saveData) {
+            sink.open(tinylog.getDirName(), tinylog.getTimestamp());
+        }
+
+        SimulatorCheckpoint c = checkpoint();
+
+        if (resume != null) {
+            String setting = resume.differingSetting(c);
+
+            if (setting != null) {
+                Logger.error("Setting {0} is NOT the same as that of the " +
+                             "checkpoint - can't resume", setting);
+                System.exit(-1);
+            }
+
+            // The data file only holds every completed run if the resumed
+            // simulation saved its data too
+            c.setDataSaved(flag_saveData && resume.isDataSaved());
+
+            sink.restore(resume, resumeDirName);
+            Logger.info("Resuming from logs/{0} at run {1}", resumeDirName,
+                        sink.getNextRun());
+        }
+
+        if (checkpointInterval > 0) {
+            sink.setCheckpoint(c, tinylog.getDirName(), checkpointInterval);
+        }
+
+
+        if (workers > 1) {
+            executeParallel(sink.getNextRun(), shardRuns);
+        }
+        else {
+            executeSequential(sink.getNextRun(), shardRuns);
+        }
+
+        if (gv != null) {
+            gv.end();
+        }
+
+        sink.close();
+
         Logger.info("ALL SIMULATION RUNS COMPLETE");
 
         postmortem();
@@ -473,7 +857,10 @@ public class Simulator {
     public String toString() {
         return "\n\t Term A: " + termA +
                ";\n\t Term B: " + termB +
-               ";\n\t Max interactions: " + maxTimeSteps;
+               ";\n\t Max interactions: " + maxTimeSteps +
+               ";\n\t Random generator: " + generator +
+               ";\n\t Engine: " + engine +
+               ";\n\t Workers: " + workers;
     }
 
 
@@ -550,7 +937,25 @@ public class Simulator {
      * 			    each event
      */
     public void visSleep(int sleep) {
-        Sleep.SLEEP = sleep;
+        ctx.setSleep(sleep);
+    }
+
+
+    /**
+     * Draw the visualization at a fixed frame rate, instead of on every event.
+     * The simulation then runs at full speed, only publishing its changes,
+     * and visSleep() is ignored. Many changes to a node between two frames
+     * are drawn once. Default is 0, every event is drawn as it happens.
+     *
+     * @param fps Frames per second, 0 to draw every event
+     */
+    public void visFrameRate(int fps) {
+        if (fps < 0 || fps > 1000) {
+            Logger.error("Visualization frame rate must be between 0 and 1000");
+            System.exit(-1);
+        }
+
+        ctx.setFrameRate(fps);
     }
 
 
@@ -564,15 +969,26 @@ public class Simulator {
 
 
     /**
-     * Turn on charts for viewing at the end of the simulation. This is OFF by
-     * default and the chart data that is saved to disk is not affected by this
-     * setting.
+     * Turn on charts for viewing at the end of the simulation, also saved to
+     * disk as a PNG. This is OFF by default and the chart data that is saved
+     * to disk is not affected by this setting.
      */
     public void charts() {
         flag_charts = true;
     }
 
 
+    /**
+     * Save the markers chart to disk as a PNG at the end of the simulation,
+     * without displaying it. This is OFF by default, no chart is made (and no
+     * chart or UI classes are loaded). A chart can also be made later from
+     * the data file, see saveSimData() and client.Chart.
+     */
+    public void saveChart() {
+        flag_saveChart = true;
+    }
+
+
     /**
      * Redirect logs to standard output
      */
@@ -582,7 +998,8 @@ public class Simulator {
 
 
     /**
-     * Save the data points used for the markers chart to disk in JSON format.
+     * Save the data of each run to disk, in JSON lines format (one run per
+     * line). Each run is written the moment it completes.
      *
      * WARNING: File size could be quite largely, easily hundreds of MB's for
      *          large simulations.
@@ -606,6 +1023,192 @@ public class Simulator {
     }
 
 
+    /**
+     * Seed the random generator, making the simulation reproducible. If not
+     * set, a seed is drawn from system entropy. Either way, the seed is saved
+     * to the metadata.json.
+     *
+     * @param seed Seed for the random generator
+     */
+    public void seed(long seed) {
+        this.seed = seed;
+        flag_seed = true;
+    }
+
+
+    /**
+     * Which random generator should be used? Default is FAST. REFERENCE is the
+     * original SecureRandom SHA1PRNG, which is much slower, but can be used to
+     * compare against older results.
+     *
+     * @param generator Random generator to be used
+     */
+    public void generator(Generator generator) {
+        this.generator = generator;
+    }
+
+
+    /**
+     * How should runs be simulated? Default is AGENT. COUNT is much lighter,
+     * but only for a well-mixed population, that is all agents in a single
+     * node with no leaving edges (like a single node graph). Otherwise AGENT
+     * is used. Results are the same either way in distribution, not for a
+     * given seed. LEAP, for the same populations, is approximate but takes
+     * about as long for millions of agents as for thousands.
+     *
+     * @param engine Engine to be used
+     */
+    public void engine(Engine engine) {
+        this.engine = engine;
+    }
+
+
+    /**
+     * How far may the LEAP engine stray? Over a leap, no count of agents is
+     * expected to change by more than this fraction of itself. Default is
+     * 0.03. Smaller is closer to COUNT, but slower, 0 steps one interaction
+     * at a time.
+     *
+     * @param tolerance Tolerance, between 0 and 1
+     */
+    public void leapTolerance(double tolerance) {
+        if (tolerance < 0 || tolerance > 1) {
+            Logger.error("Leap tolerance must be between 0 and 1");
+            System.exit(-1);
+        }
+
+        leapTolerance = tolerance;
+    }
+
+
+    /**
+     * How often should the progress of the simulation be saved, so that it
+     * can be resumed (see resume())? Default is every 60 seconds, at most,
+     * to checkpoint.timestamp.json in the logs directory.
+     *
+     * @param seconds Least number of seconds between two checkpoints, 0 for
+     *                none
+     */
+    public void checkpointInterval(int seconds) {
+        if (seconds < 0) {
+            Logger.error("Checkpoint interval must be 0 or more seconds");
+            System.exit(-1);
+        }
+
+        checkpointInterval = seconds;
+    }
+
+
+    /**
+     * Resume a simulation that stopped before it was done, from its last
+     * checkpoint. The runs it completed are not run again, the rest are
+     * run as they would have been (the seed comes from the checkpoint). Its
+     * settings must be made the same as before, only the number of workers
+     * may differ. The resumed simulation has a logs directory of its own,
+     * its data file (if saved) and chart include the completed runs, if
+     * their data was saved.
+     *
+     * @param dirName Name of the logs directory of the simulation, for
+     *                example log.2014-07-14_23-15-03
+     */
+    public void resume(String dirName) {
+        try {
+            resume = SimulatorCheckpoint.read(dirName);
+            resumeDirName = dirName;
+        } catch (IOException e) {
+            Logger.error(e, "Can't resume from logs/{0}", dirName);
+            System.exit(-1);
+        }
+    }
+
+
+    /**
+     * Replay a single run of a simulation, instead of executing all of them.
+     * Give the seed of the simulation with seed() (see its metadata), and
+     * the rest of its settings, except the range of agents and the number of
+     * runs. The run goes exactly as it did, as each run has a seed of its
+     * own (also found in the data of each run).
+     *
+     * @param numAgents Number of agents of the run
+     * @param run Index of the run, from 0, among those of its number of
+     *            agents
+     */
+    public void replay(int numAgents, int run) {
+        if (numAgents < 1 || run < 0) {
+            Logger.error("Replay needs 1 or more agents and a run index of " +
+                         "0 or more");
+            System.exit(-1);
+        }
+
+        replayNumAgents = numAgents;
+        replayRun = run;
+    }
+
+
+    /**
+     * Execute a single shard of the sweep, so that it can be spread over
+     * many machines (or processes). The runs are dealt out to the shards in
+     * turn, shard i gets the runs whose index, across all numbers of agents,
+     * is i modulo count. Every shard needs the same settings and seed (set
+     * with seed()), their results are then put together with
+     * SimulatorMerge. Also set by the system property sim.shard, for
+     * example -Dsim.shard=2/8.
+     *
+     * @param index Index of the shard, from 0 to count - 1
+     * @param count Number of shards
+     */
+    public void shard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            Logger.error("Shard index must be from 0 to the number of " +
+                         "shards - 1");
+            System.exit(-1);
+        }
+
+        shardIndex = index;
+        shardCount = count;
+    }
+
+
+    /**
+     * Execute a single shard of the sweep, see shard(int, int)
+     *
+     * @param shard Shard as index/count, for example 2/8, as given on the
+     *              command line
+     */
+    public void shard(String shard) {
+        String[] parts = shard.trim().split("/");
+
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException(shard);
+            }
+
+            shard(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        } catch (NumberFormatException e) {
+            Logger.error("Shard must be given as index/count, for example " +
+                         "2/8, not {0}", shard);
+            System.exit(-1);
+        }
+    }
+
+
+    /**
+     * Spread the runs over a pool of worker threads, instead of running them
+     * one after another. Results are the same either way, for a given seed.
+     * Ignored if visualization is on.
+     *
+     * @param workers Number of worker threads. 0 or less uses one per
+     *                available processor.
+     */
+    public void parallel(int workers) {
+        if (workers <= 0) {
+            workers = Runtime.getRuntime().availableProcessors();
+        }
+
+        this.workers = workers;
+    }
+
+
     /**
      * Provide an optional description about the simulation run. This will be
      * saved to the metadata.json.
@@ -623,7 +1226,9 @@ public class Simulator {
 
 
     /**
-     * Generate a fully connected graph
+     * Generate a fully connected graph. If visualization is off and edges are
+     * not randomly directed, no nodes or edges are made, its topology is
+     * computed instead (see FullyConnectedTopology).
      *
      * @param n Number of nodes the graph should have
      * @param directed Should the edges be directed?
@@ -634,9 +1239,8 @@ public class Simulator {
                                             boolean randomlyDirectedEdges) {
         gt = GraphType.FULLY_CONNECTED;
         flag_generateGraph = true;
-        GraphGeneratorSource.getInstance()
-                            .graphFullyConnected(n, directed,
-                                                    randomlyDirectedEdges);
+        ctx.getGraphGeneratorSource()
+           .graphFullyConnected(n, directed, randomlyDirectedEdges);
     }
 
 
@@ -644,7 +1248,8 @@ public class Simulator {
      * Generate a chain graph.
      *
      * If the graph is undirected, nodes are single linked regardless of
-     * doublyLinked argument.
+     * doublyLinked argument. If visualization is off, no nodes or edges are
+     * made, its topology is computed instead (see ChainTopology).
      *
      * @param n Number of nodes the graph should have
      * @param directed Should the edges be directed?
@@ -657,13 +1262,14 @@ public class Simulator {
                                           boolean loopBack) {
         gt = GraphType.CHAIN;
         flag_generateGraph = true;
-        GraphGeneratorSource.getInstance()
-                            .graphChain(n, directed, doublyLinked, loopBack);
+        ctx.getGraphGeneratorSource()
+           .graphChain(n, directed, doublyLinked, loopBack);
     }
 
 
     /**
-     * Generate an n * n grid graph
+     * Generate an n * n grid graph. If visualization is off, no nodes or
+     * edges are made, its topology is computed instead (see GridTopology).
      *
      * @param n How many nodes should this graph have? Since this is a grid,
      *          this equates to n * n nodes
@@ -673,6 +1279,6 @@ public class Simulator {
     public void generateGraphGrid(int n, boolean directed, boolean crossEdges) {
         gt = GraphType.GRID;
         flag_generateGraph = true;
-        GraphGeneratorSource.getInstance().graphGrid(n, directed, crossEdges);
+        ctx.getGraphGeneratorSource().graphGrid(n, directed, crossEdges);
     }
 }
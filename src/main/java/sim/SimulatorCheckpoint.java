@@ -0,0 +1,454 @@
+/*
+ * SimulatorCheckpoint.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+
+import sim.AgentDistribution.Distribution;
+import sim.GraphGeneratorSource.GraphType;
+import sim.RandomSource.Generator;
+import sim.Simulator.ActionSelection;
+import sim.Simulator.Engine;
+import sim.Simulator.NodeSelection;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+
+/**
+ * Progress of a simulation, saved now and then while it runs, so that it can
+ * be resumed after a crash without redoing the runs it completed. This class
+ * is serialized into JSON, checkpoint.timestamp.json in the logs directory.
+ *
+ * Runs are taken in run order, so the completed runs are all those before
+ * nextRun. For a shard of a sweep, run indices are those of the shard. Every
+ * run is seeded from the seed of the simulation, its number of agents and
+ * its index (see RandomSource.runSeed()), so the seed and generator are all
+ * the random state there is to save.
+ *
+ */
+public class SimulatorCheckpoint {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * When was the checkpoint saved?
+     */
+    private Date date;
+
+
+    /**
+     * Timestamp of the simulation that saved it, also that of its data file
+     */
+    private String timestamp;
+
+
+    /*
+     * Settings of the simulation. A simulation can only be resumed with the
+     * same ones.
+     */
+    private int lowerNumAgents;
+    private int upperNumAgents;
+    private int runsPerPopulation;
+    private int termA;
+    private int termB;
+    private int maxTimeSteps;
+    private GraphType graphType;
+    private int numNodes;
+    private long numEdges;
+    private long topologyFingerprint;
+    private NodeSelection nodeSelection;
+    private ActionSelection actionSelection;
+    private double interactProbability;
+    private double traversalProbability;
+    private Distribution agentDistribution;
+    private String agentDistSINGLE_nodeID;
+    private Engine engine;
+    private Double leapTolerance;
+    private Generator generator;
+    private long seed;
+    private int shardIndex;
+    private int shardCount;
+
+
+    /**
+     * Was the data of every run saved? If so, the data file holds a line for
+     * each completed run.
+     */
+    private boolean dataSaved;
+
+
+    /**
+     * Index of the next run, all runs before it are complete
+     */
+    private int nextRun;
+
+
+    /*
+     * Aggregate statistics of the completed runs, see SimulatorRunSink
+     */
+    private int totalRuns;
+    private int leaderOverTaken;
+    private int infectionIncomplete;
+    private double leaderError;
+    private double infectionLevel;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Read the checkpoint of a simulation
+     *
+     * @param dirName Name of the logs directory of the simulation
+     * @return The checkpoint
+     * @throws IOException If there is no checkpoint, or it can't be read
+     */
+    public static SimulatorCheckpoint read(String dirName) throws IOException {
+        File[] files = FileSystems.getDefault().getPath("logs", dirName)
+                                               .toFile().listFiles();
+
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+
+                if (name.startsWith("checkpoint.") && name.endsWith(".json")) {
+                    String json = new String(Files.readAllBytes(f.toPath()),
+                                             StandardCharsets.UTF_8);
+
+                    return new Gson().fromJson(json, SimulatorCheckpoint.class);
+                }
+            }
+        }
+
+        throw new IOException("No checkpoint in logs/" + dirName);
+    }
+
+
+    /**
+     * Save the checkpoint to logs/dirName/checkpoint.timestamp.json. Written
+     * to a temporary file first, then moved over the last one, so that a
+     * crash while saving leaves the last one whole.
+     *
+     * @param dirName Name of the logs directory
+     * @throws IOException If the checkpoint can't be written
+     */
+    public void write(String dirName) throws IOException {
+        String jsonName = "checkpoint." + timestamp + ".json";
+        Path path = FileSystems.getDefault().getPath("logs", dirName, jsonName);
+        Path tmp = FileSystems.getDefault().getPath("logs", dirName,
+                                                    jsonName + ".tmp");
+
+        String json = new GsonBuilder().setPrettyPrinting().create()
+                                       .toJson(this);
+
+        Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                              StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Does the other checkpoint come from a simulation with the same
+     * settings? The seed is not a setting, a resumed simulation takes it from
+     * the checkpoint.
+     *
+     * @param o Checkpoint of the other simulation
+     * @return Name of the first setting that differs, null if none
+     */
+    public String differingSetting(SimulatorCheckpoint o) {
+        if (lowerNumAgents != o.lowerNumAgents ||
+            upperNumAgents != o.upperNumAgents) {
+            return "numAgents";
+        }
+        if (runsPerPopulation != o.runsPerPopulation) {
+            return "runs";
+        }
+        if (termA != o.termA) {
+            return "termA";
+        }
+        if (termB != o.termB) {
+            return "termB";
+        }
+        if (maxTimeSteps != o.maxTimeSteps) {
+            return "maxTimeSteps";
+        }
+        if (graphType != o.graphType) {
+            return "graphType";
+        }
+        if (numNodes != o.numNodes) {
+            return "numNodes";
+        }
+        if (numEdges != o.numEdges ||
+            topologyFingerprint != o.topologyFingerprint) {
+            return "graph";
+        }
+        if (nodeSelection != o.nodeSelection) {
+            return "nodeSelection";
+        }
+        if (actionSelection != o.actionSelection ||
+            interactProbability != o.interactProbability ||
+            traversalProbability != o.traversalProbability) {
+            return "actionProbability";
+        }
+        if (agentDistribution != o.agentDistribution) {
+            return "agentDistribution";
+        }
+        if (!equal(agentDistSINGLE_nodeID, o.agentDistSINGLE_nodeID)) {
+            return "SINGLE node ID";
+        }
+        if (engine != o.engine) {
+            return "engine";
+        }
+        if (!equal(leapTolerance, o.leapTolerance)) {
+            return "leapTolerance";
+        }
+        if (generator != o.generator) {
+            return "generator";
+        }
+        if (shardIndex != o.shardIndex || shardCount != o.shardCount) {
+            return "shard";
+        }
+
+        return null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+
+    public long getSeed() {
+        return seed;
+    }
+
+
+    public boolean isDataSaved() {
+        return dataSaved;
+    }
+
+
+    public int getNextRun() {
+        return nextRun;
+    }
+
+
+    public int getTotalRuns() {
+        return totalRuns;
+    }
+
+
+    public int getLeaderOverTaken() {
+        return leaderOverTaken;
+    }
+
+
+    public int getInfectionIncomplete() {
+        return infectionIncomplete;
+    }
+
+
+    public double getLeaderError() {
+        return leaderError;
+    }
+
+
+    public double getInfectionLevel() {
+        return infectionLevel;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - SETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+
+    public void setTimestamp(String timestamp) {
+        this.timestamp = timestamp;
+    }
+
+
+    public void setNumAgents(int lower, int upper) {
+        lowerNumAgents = lower;
+        upperNumAgents = upper;
+    }
+
+
+    public void setRuns(int runs) {
+        runsPerPopulation = runs;
+    }
+
+
+    public void setTermA(int termA) {
+        this.termA = termA;
+    }
+
+
+    public void setTermB(int termB) {
+        this.termB = termB;
+    }
+
+
+    public void setMaxTimeSteps(int maxTimeSteps) {
+        this.maxTimeSteps = maxTimeSteps;
+    }
+
+
+    public void setGraphType(GraphType graphType) {
+        this.graphType = graphType;
+    }
+
+
+    public void setNumNodes(int numNodes) {
+        this.numNodes = numNodes;
+    }
+
+
+    /**
+     * Structure of the graph, beyond its number of nodes
+     *
+     * @param topology Topology of the graph
+     */
+    public void setTopology(Topology topology) {
+        numEdges = topology.numEdges();
+        topologyFingerprint = topology.fingerprint();
+    }
+
+
+    public void setActionProbability(ActionSelection actionSelection,
+                                     double interactProbability,
+                                     double traversalProbability) {
+        this.actionSelection = actionSelection;
+        this.interactProbability = interactProbability;
+        this.traversalProbability = traversalProbability;
+    }
+
+
+    public void setNodeSelection(NodeSelection nodeSelection) {
+        this.nodeSelection = nodeSelection;
+    }
+
+
+    public void setAgentDistribution(Distribution agentDistribution) {
+        this.agentDistribution = agentDistribution;
+    }
+
+
+    /**
+     * @param id Node all agents start in, null if not SINGLE distribution
+     */
+    public void setAgentDistSINGLE_nodeID(String id) {
+        agentDistSINGLE_nodeID = id;
+    }
+
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+
+    /**
+     * @param leapTolerance Tolerance of the LEAP engine, null if not used
+     */
+    public void setLeapTolerance(Double leapTolerance) {
+        this.leapTolerance = leapTolerance;
+    }
+
+
+    public void setGenerator(Generator generator) {
+        this.generator = generator;
+    }
+
+
+    public void setShard(int index, int count) {
+        shardIndex = index;
+        shardCount = count;
+    }
+
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+
+    public void setDataSaved(boolean dataSaved) {
+        this.dataSaved = dataSaved;
+    }
+
+
+    /**
+     * Progress of the simulation, as kept by SimulatorRunSink
+     *
+     * @param nextRun Index of the next run, all runs before it are complete
+     * @param totalRuns Number of runs taken
+     * @param leaderOverTaken Runs in which the leader never called election
+     *                        complete
+     * @param infectionIncomplete Runs in which infection never completed
+     * @param leaderError Runs in which the leader was wrong
+     * @param infectionLevel Sum of the infection levels of the runs
+     */
+    public void setProgress(int nextRun, int totalRuns, int leaderOverTaken,
+                            int infectionIncomplete, double leaderError,
+                            double infectionLevel) {
+        this.nextRun = nextRun;
+        this.totalRuns = totalRuns;
+        this.leaderOverTaken = leaderOverTaken;
+        this.infectionIncomplete = infectionIncomplete;
+        this.leaderError = leaderError;
+        this.infectionLevel = infectionLevel;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * SimulatorContext.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+
+/**
+ * Everything a single simulation owns, that used to be global (singletons and
+ * static fields). The random source, the sink for the results of the runs,
+ * the graph generator, the visualization, and its sleep and frame rate. Each
+ * Simulator has its own, so that many simulations can run in the same JVM,
+ * even at the same time.
+ *
+ */
+public class SimulatorContext {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Random source of the simulation. Parallel runs have one per worker
+     * thread on top of this one.
+     */
+    private final RandomSource rs;
+
+
+    /**
+     * How many completed runs may wait on an earlier run, in parallel
+     * execution, before the workers hold off
+     */
+    private static final int MAX_PENDING_RUNS = 1024;
+
+
+    /**
+     * Where the data of every completed run goes
+     */
+    private final SimulatorRunSink runSink;
+
+
+    private final GraphGeneratorSource graphGeneratorSource;
+
+
+    /**
+     * Graph visualization, null if visualization is off
+     */
+    private GraphVis gv;
+
+
+    /**
+     * How many milliseconds to sleep between each visualization event
+     */
+    private int sleep;
+
+
+    /**
+     * Frames per second the visualization is drawn at, 0 to draw every event
+     * as it happens
+     */
+    private int frameRate;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public SimulatorContext() {
+        rs = new RandomSource();
+        runSink = new SimulatorRunSink(MAX_PENDING_RUNS);
+        graphGeneratorSource = new GraphGeneratorSource(this);
+        gv = null;
+        sleep = 0;
+        frameRate = 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Turn on graph visualization, creating it if needed
+     *
+     * @return Graph visualization of this simulation
+     */
+    protected GraphVis vis() {
+        if (gv == null) {
+            gv = new GraphVis(this);
+        }
+
+        return gv;
+    }
+
+
+    /**
+     * Sleep for the visualization sleep duration, to let the user see the
+     * changes
+     */
+    protected void sleep() {
+        Sleep.sleep(sleep);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    protected RandomSource getRandomSource() {
+        return rs;
+    }
+
+
+    protected SimulatorRunSink getRunSink() {
+        return runSink;
+    }
+
+
+    protected GraphGeneratorSource getGraphGeneratorSource() {
+        return graphGeneratorSource;
+    }
+
+
+    /**
+     * Graph visualization, if on
+     *
+     * @return Graph visualization, null if visualization is off
+     */
+    protected GraphVis getGraphVis() {
+        return gv;
+    }
+
+
+    protected int getSleep() {
+        return sleep;
+    }
+
+
+    protected int getFrameRate() {
+        return frameRate;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS - SETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    protected void setSleep(int sleep) {
+        this.sleep = sleep;
+    }
+
+
+    protected void setFrameRate(int frameRate) {
+        this.frameRate = frameRate;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * SimulatorMerge.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package sim;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+
+/**
+ * Puts the shards of a sweep (see Simulator.shard()) back together, as if the
+ * sweep had run on a single machine. The data of the shards is dealt back
+ * into run order and taken by a SimulatorRunSink, so the data file, markers
+ * chart and aggregate statistics of the metadata are the same as those of a
+ * single simulation with the same settings and seed.
+ *
+ * The data files of the shards are read a line at a time, memory does not
+ * grow with the number of runs.
+ *
+ */
+public class SimulatorMerge {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Metadata that differs from shard to shard. The rest are the settings
+     * of the sweep, and must be the same for all shards.
+     */
+    private static final String[] SHARD_METADATA = {"date",
+                                                    "duration",
+                                                    "description",
+                                                    "shard",
+                                                    "resumedFrom",
+                                                    "totalRuns",
+                                                    "avg_infectionLevel",
+                                                    "avg_leaderError"};
+
+
+    /**
+     * Metadata of the merged sweep as a whole, the rest comes from the shards
+     */
+    private static final String[] MERGED_METADATA = {"date",
+                                                     "totalRuns",
+                                                     "avg_infectionLevel",
+                                                     "avg_leaderError",
+                                                     "mergedFrom"};
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Merge the shards of a sweep into logs/dirName. Every shard must have
+     * completed, with its data saved (Simulator.saveSimData()). Writes the
+     * data file, markers chart and metadata of the whole sweep.
+     *
+     * @param shardDirNames Names of the logs directories of the shards, in
+     *                      any order
+     * @param dirName Name of the logs directory to merge into, must exist
+     * @param timestamp Timestamp of the merged files
+     * @throws IOException If a shard can't be read, or the shards are not
+     *                     those of a single sweep
+     */
+    public static void merge(String[] shardDirNames, String dirName,
+                                                     String timestamp)
+                                                     throws IOException {
+        JsonObject[] metadata = null;
+        Path[] data = null;
+        JsonParser parser = new JsonParser();
+
+        for (String shardDirName : shardDirNames) {
+            JsonObject m = parser.parse(new String(Files.readAllBytes(
+                                        find(shardDirName, "metadata.", ".json")),
+                                        StandardCharsets.UTF_8))
+                                 .getAsJsonObject();
+
+            String shard = m.has("shard") ? m.get("shard").getAsString()
+                                          : "0/1";
+            String[] parts = shard.split("/");
+            int index = Integer.parseInt(parts[0]);
+            int count = Integer.parseInt(parts[1]);
+
+            if (metadata == null) {
+                metadata = new JsonObject[count];
+                data = new Path[count];
+            }
+
+            if (count != metadata.length) {
+                throw new IOException("Shard " + shard + " of logs/" +
+                                      shardDirName + " is not one of " +
+                                      metadata.length);
+            }
+            if (metadata[index] != null) {
+                throw new IOException("Shard " + shard + " given twice");
+            }
+
+            metadata[index] = m;
+            data[index] = find(shardDirName, "data.", ".jsonl");
+        }
+
+        int count = metadata.length;
+
+        for (int i = 0; i < count; i++) {
+            if (metadata[i] == null) {
+                throw new IOException("Shard " + i + "/" + count +
+                                      " missing");
+            }
+
+            String setting = differingSetting(metadata[0], metadata[i]);
+            if (setting != null) {
+                throw new IOException("Setting " + setting + " of shard " +
+                                      i + "/" + count + " is NOT the same " +
+                                      "as that of shard 0/" + count);
+            }
+        }
+
+
+        /*
+         * Deal the runs back into run order, shard i has the runs whose index
+         * is i modulo count, in order
+         */
+        JsonObject numAgents = metadata[0].getAsJsonObject("numAgents");
+        int lower = numAgents.getAsJsonObject("lowerBound").get("endpoint")
+                                                           .getAsInt();
+        int upper = numAgents.getAsJsonObject("upperBound").get("endpoint")
+                                                           .getAsInt();
+        int runs = metadata[0].get("runsPerPopulation").getAsInt();
+        int totalRuns = (upper - lower) * runs;
+
+        SimulatorRunSink sink = new SimulatorRunSink(1);
+        MarkersChart mc = new MarkersChart(totalRuns * 3, dirName, timestamp);
+        sink.setMarkersChart(mc);
+        sink.open(dirName, timestamp);
+
+        BufferedReader[] readers = new BufferedReader[count];
+        Gson gson = new Gson();
+
+        try {
+            for (int i = 0; i < count; i++) {
+                readers[i] = Files.newBufferedReader(data[i],
+                                                     StandardCharsets.UTF_8);
+            }
+
+            for (int run = 0; run < totalRuns; run++) {
+                int shard = run % count;
+                String line = readers[shard].readLine();
+
+                if (line == null) {
+                    throw new IOException("Data of shard " + shard + "/" +
+                                          count + " ends before run " + run);
+                }
+
+                SimulatorRun r = gson.fromJson(line, SimulatorRun.class);
+
+                if (r.getNumAgents() != lower + run / runs ||
+                    r.getRun() != run % runs) {
+                    throw new IOException("Data of shard " + shard + "/" +
+                                          count + " out of place at run " +
+                                          run);
+                }
+
+                sink.add(run, r);
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (readers[i].readLine() != null) {
+                    throw new IOException("Data of shard " + i + "/" + count +
+                                          " has more runs than the sweep");
+                }
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+
+            sink.close();
+        }
+
+        mc.save();
+
+
+        /*
+         * Settings from the shards, statistics from the sink
+         */
+        SimulatorMetaData smd = new SimulatorMetaData();
+        smd.setDate(new Date());
+        smd.setTotalRuns(sink.getTotalRuns());
+        smd.setAvgInfectionLevel(sink.getAvgInfectionLevel());
+        smd.setAvgLeaderError(sink.getAvgLeaderError());
+
+        String[] mergedFrom = shardDirNames.clone();
+        Arrays.sort(mergedFrom);
+        smd.setMergedFrom(mergedFrom);
+
+        JsonObject merged = metadata[0];
+        merged.remove("duration");
+        merged.remove("shard");
+        merged.remove("resumedFrom");
+
+        JsonObject stats = gson.toJsonTree(smd).getAsJsonObject();
+
+        for (String key : MERGED_METADATA) {
+            merged.add(key, stats.get(key));
+        }
+
+        JSONUtil.writeJSON(dirName, "metadata", timestamp, merged, true);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * File of a simulation by the start and end of its name, the timestamp
+     * being in between
+     */
+    private static Path find(String dirName, String prefix, String suffix)
+                                                        throws IOException {
+        File[] files = FileSystems.getDefault().getPath("logs", dirName)
+                                               .toFile().listFiles();
+
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    return f.toPath();
+                }
+            }
+        }
+
+        throw new IOException("No " + prefix + "*" + suffix + " in logs/" +
+                              dirName);
+    }
+
+
+    /**
+     * Name of the first setting that differs between the metadata of two
+     * shards, null if none. The number of edges and the fingerprint of the
+     * graph are settings too, so shards run on different graphs of the same
+     * type and number of nodes are told apart.
+     */
+    private static String differingSetting(JsonObject a, JsonObject b) {
+        JsonObject settingsA = settings(a);
+        JsonObject settingsB = settings(b);
+
+        for (Map.Entry<String, JsonElement> e : settingsA.entrySet()) {
+            if (!e.getValue().equals(settingsB.get(e.getKey()))) {
+                return e.getKey();
+            }
+        }
+
+        for (Map.Entry<String, JsonElement> e : settingsB.entrySet()) {
+            if (!settingsA.has(e.getKey())) {
+                return e.getKey();
+            }
+        }
+
+        return null;
+    }
+
+
+    private static JsonObject settings(JsonObject metadata) {
+        JsonObject settings = new JsonObject();
+
+        for (Map.Entry<String, JsonElement> e : metadata.entrySet()) {
+            settings.add(e.getKey(), e.getValue());
+        }
+
+        for (String key : SHARD_METADATA) {
+            settings.remove(key);
+        }
+
+        return settings;
+    }
+}
@@ -26,6 +26,8 @@ import java.util.concurrent.TimeUnit;
 
 import sim.AgentDistribution.Distribution;
 import sim.GraphGeneratorSource.GraphType;
+import sim.RandomSource.Generator;
+import sim.Simulator.Engine;
 import sim.Simulator.NodeSelection;
 
 import com.google.common.collect.Range;
@@ -76,6 +78,13 @@ public class SimulatorMetaData {
     private String agentDistSINGLE_nodeID;
     private int numNodes;
 
+    /**
+     * Structure of the graph, beyond its number of nodes: its number of
+     * edges and its fingerprint (see Topology.fingerprint()), in hex
+     */
+    private long numEdges;
+    private String topologyFingerprint;
+
     private String interactProbability;
     private String traversalProbability;
 
@@ -86,6 +95,45 @@ public class SimulatorMetaData {
     private int runsPerPopulation;
     private int totalRuns;
 
+    /**
+     * Random generator and the seed it was given. Same seed, same results.
+     */
+    private Generator generator;
+    private long seed;
+
+
+    /**
+     * How runs were simulated
+     */
+    private Engine engine;
+
+
+    /**
+     * Tolerance of the LEAP engine, if used
+     */
+    private Double leapTolerance;
+
+    /**
+     * Logs directory of the simulation this one resumed, if any
+     */
+    private String resumedFrom;
+
+    /**
+     * Run replayed on its own, if any (numAgents holds its number of agents)
+     */
+    private Integer replayedRun;
+
+    /**
+     * Shard of the sweep executed, as index/count, if it was sharded
+     */
+    private String shard;
+
+    /**
+     * Logs directories of the shards, if merged from them (see
+     * SimulatorMerge)
+     */
+    private String[] mergedFrom;
+
     private String avg_infectionLevel;
     private String avg_leaderError;
 
@@ -132,6 +180,12 @@ public class SimulatorMetaData {
     }
 
 
+    public void setTopology(Topology topology) {
+        numEdges = topology.numEdges();
+        topologyFingerprint = Long.toHexString(topology.fingerprint());
+    }
+
+
     public void setInteractProbability(double interactProbability) {
         this.interactProbability = Double.toString(interactProbability * 100) + "%";
     }
@@ -200,4 +254,44 @@ public class SimulatorMetaData {
     public void setAgentDistSINGLE_nodeID(String id) {
         this.agentDistSINGLE_nodeID = id;
     }
+
+
+    public void setGenerator(Generator generator) {
+        this.generator = generator;
+    }
+
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+
+    public void setResumedFrom(String dirName) {
+        resumedFrom = dirName;
+    }
+
+
+    public void setReplayedRun(int run) {
+        replayedRun = run;
+    }
+
+
+    public void setShard(int index, int count) {
+        shard = index + "/" + count;
+    }
+
+
+    public void setMergedFrom(String[] dirNames) {
+        mergedFrom = dirNames;
+    }
+
+
+    public void setLeapTolerance(double leapTolerance) {
+        this.leapTolerance = leapTolerance;
+    }
 }
@@ -42,6 +42,19 @@ public class SimulatorRun {
     private int numAgents;
 
 
+    /**
+     * Index of the run, from 0, among the runs of its number of agents
+     */
+    private int run;
+
+
+    /**
+     * Seed the run was given, see RandomSource.runSeed(). Along with the
+     * settings of the simulation, all that is needed to replay it.
+     */
+    private long seed;
+
+
     /**
      * How many agents were infected?
      */
@@ -149,6 +162,16 @@ public class SimulatorRun {
     }
 
 
+    public int getRun() {
+        return run;
+    }
+
+
+    public long getSeed() {
+        return seed;
+    }
+
+
     public int getInfections() {
         return infections;
     }
@@ -214,6 +237,16 @@ public class SimulatorRun {
     }
 
 
+    public void setRun(int run) {
+        this.run = run;
+    }
+
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+
     public void setInfections(int infections) {
         this.infections = infections;
     }
@@ -0,0 +1,444 @@
+/*
+ * SimulatorRunSink.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.TreeMap;
+
+import org.pmw.tinylog.Logger;
+
+import com.google.gson.Gson;
+
+
+/**
+ * Where the data of each run goes, the moment the run completes. Runs are
+ * taken in run order, if one completes early, it waits in a small buffer for
+ * those before it. Each run then
+ *
+ * - is added to the aggregate statistics, kept as running totals
+ * - is added to the markers chart, if set
+ * - is written as a line of JSON to the data file, if open, and flushed
+ *
+ * Every so often, the progress is saved to a checkpoint, if set, from which
+ * the simulation can be resumed.
+ *
+ * The run itself is then dropped, so memory does not grow with the number of
+ * runs.
+ *
+ */
+public class SimulatorRunSink {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * How many runs may wait in the buffer. Beyond this, a run that completes
+     * early blocks until those before it are in.
+     */
+    private final int maxPending;
+
+
+    /**
+     * Runs that completed before some earlier run, by run index
+     */
+    private final TreeMap<Integer, SimulatorRun> pending;
+
+
+    /**
+     * Index of the next run to be taken
+     */
+    private int next;
+
+
+    private final Gson gson;
+
+
+    /**
+     * Data file, null if not saving data
+     */
+    private BufferedWriter writer;
+
+
+    /**
+     * Markers chart, null if none
+     */
+    private MarkersChart mc;
+
+
+    /**
+     * Checkpoint of the simulation, null if none. Saved at most once every
+     * checkpointInterval ms, into checkpointDir.
+     */
+    private SimulatorCheckpoint checkpoint;
+    private String checkpointDir;
+    private long checkpointInterval;
+    private long lastCheckpoint;
+
+
+    private int totalRuns;
+    private int leaderOverTaken;
+    private int infectionIncomplete;
+    private double leaderError;
+    private double infectionLevel;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * @param maxPending How many runs may wait on an earlier run
+     */
+    public SimulatorRunSink(int maxPending) {
+        this.maxPending = maxPending;
+        pending = new TreeMap<Integer, SimulatorRun>();
+        gson = new Gson();
+        writer = null;
+        mc = null;
+        next = 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Open the data file, logs/dirName/data.timestamp.jsonl. One run per line.
+     *
+     * @param dirName Path to logs dir
+     * @param timestamp Simulation timestamp
+     */
+    public void open(String dirName, String timestamp) {
+        String fileName = "data." + timestamp + ".jsonl";
+        Path path = FileSystems.getDefault().getPath("logs", dirName, fileName);
+
+        try {
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                                                   StandardOpenOption.CREATE);
+        } catch (IOException e) {
+            Logger.error(e);
+        }
+    }
+
+
+    /**
+     * Take the data of a completed run. Safe to call from many threads.
+     *
+     * @param run Index of the run, from 0, across all numbers of agents
+     * @param r Data of the run
+     */
+    public synchronized void add(int run, SimulatorRun r) {
+        // Keep the buffer bounded, the next run is always let in
+        while (run != next && pending.size() >= maxPending) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Logger.error(e);
+                return;
+            }
+        }
+
+        pending.put(run, r);
+
+        SimulatorRun s;
+        while ((s = pending.remove(next)) != null) {
+            take(s);
+            next++;
+        }
+
+        if (checkpoint != null &&
+            System.currentTimeMillis() - lastCheckpoint >= checkpointInterval) {
+            saveCheckpoint();
+        }
+
+        notifyAll();
+    }
+
+
+    /**
+     * Pick up where a checkpoint left off. The runs before its next run are
+     * taken as complete, with its aggregate statistics. Their data, if it was
+     * saved, is copied to the data file and added to the markers chart, if
+     * those are set, so call this after open() and setMarkersChart().
+     *
+     * @param c Checkpoint
+     * @param dirName Name of the logs directory the checkpoint is from
+     */
+    public synchronized void restore(SimulatorCheckpoint c, String dirName) {
+        next = c.getNextRun();
+        totalRuns = c.getTotalRuns();
+        leaderOverTaken = c.getLeaderOverTaken();
+        infectionIncomplete = c.getInfectionIncomplete();
+        leaderError = c.getLeaderError();
+        infectionLevel = c.getInfectionLevel();
+
+        if (writer == null && mc == null) {
+            return;
+        }
+
+        if (!c.isDataSaved()) {
+            Logger.warn("No data saved for the first {0} runs, they are " +
+                        "NOT in the data file or chart", next);
+            return;
+        }
+
+        Path path = FileSystems.getDefault().getPath("logs", dirName,
+                                        "data." + c.getTimestamp() + ".jsonl");
+        int copied = 0;
+
+        try {
+            BufferedReader reader = Files.newBufferedReader(path,
+                                                    StandardCharsets.UTF_8);
+
+            try {
+                String line;
+
+                // Runs after the checkpoint may have been written, they are
+                // run again
+                while (copied < next && (line = reader.readLine()) != null) {
+                    SimulatorRun r = gson.fromJson(line, SimulatorRun.class);
+
+                    chart(r);
+
+                    if (writer != null) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+
+                    copied++;
+                }
+
+                if (writer != null) {
+                    writer.flush();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            Logger.error(e);
+        }
+
+        if (copied < next) {
+            Logger.warn("Data of only {0} of the first {1} runs found",
+                        copied, next);
+        }
+    }
+
+
+    /**
+     * Close the data file, if open
+     */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Logger.error(e);
+        }
+
+        writer = null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private void take(SimulatorRun r) {
+        int nAgents = r.getNumAgents();
+        int infectionComp = r.getInfectionCompleteInteractions();
+        int leaderElecComp = r.getLeaderElectionCompleteInteractions();
+        int allElecComp = r.getAllElectionCompleteInteractions();
+
+        totalRuns++;
+
+        // If the leader never calls election complete, something went wrong
+        if (leaderElecComp == 0) {
+            leaderOverTaken++;
+        }
+
+        // Leader calls election complete BEFORE 100% infection
+        if (infectionComp > leaderElecComp &&
+                            leaderElecComp != 0 &&
+                            infectionComp != 0) {
+            leaderError++;
+        }
+
+        // If the infection complete step is zero, means it never happened,
+        // therefore, leader is wrong by default
+        if (infectionComp == 0) {
+            leaderError++;
+            infectionIncomplete++;
+        }
+
+        infectionLevel += r.getInfections() / (double) nAgents;
+
+
+        chart(r);
+
+
+        if (writer != null) {
+            try {
+                writer.write(gson.toJson(r));
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                Logger.error(e);
+            }
+        }
+    }
+
+
+    private void chart(SimulatorRun r) {
+        if (mc != null) {
+            int nAgents = r.getNumAgents();
+
+            // TODO: interaction or step?
+            mc.addDataPoint(nAgents, r.getInfectionCompleteInteractions());
+            mc.addDataPointLeader(nAgents, r.getLeaderElectionCompleteInteractions());
+            mc.addDataPointAll(nAgents, r.getAllElectionCompleteInteractions());
+        }
+    }
+
+
+    private void saveCheckpoint() {
+        checkpoint.setDate(new Date());
+        checkpoint.setProgress(next, totalRuns, leaderOverTaken,
+                               infectionIncomplete, leaderError,
+                               infectionLevel);
+
+        try {
+            checkpoint.write(checkpointDir);
+        } catch (IOException e) {
+            Logger.error(e, "Checkpoint NOT saved");
+        }
+
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - GETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * How many runs were taken so far
+     *
+     * @return Number of runs
+     */
+    public int getTotalRuns() {
+        return totalRuns;
+    }
+
+
+    /**
+     * Index of the next run to be taken, all runs before it are complete
+     *
+     * @return Run index
+     */
+    public synchronized int getNextRun() {
+        return next;
+    }
+
+
+    public int getLeaderOverTaken() {
+        return leaderOverTaken;
+    }
+
+
+    public int getInfectionIncomplete() {
+        return infectionIncomplete;
+    }
+
+
+    /**
+     * Percentage of runs in which the leader was wrong, called election
+     * complete before 100% infection or infection never completed
+     *
+     * @return Leader error, 0 to 100
+     */
+    public double getAvgLeaderError() {
+        return (leaderError / totalRuns) * 100.0;
+    }
+
+
+    /**
+     * Average percentage of agents infected at the end of a run
+     *
+     * @return Infection level, 0 to 100
+     */
+    public double getAvgInfectionLevel() {
+        return (infectionLevel / totalRuns) * 100.0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS - SETTERS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Add the data points of every run taken from now on to this chart
+     *
+     * @param mc Markers chart
+     */
+    public void setMarkersChart(MarkersChart mc) {
+        this.mc = mc;
+    }
+
+
+    /**
+     * Save the progress to this checkpoint every so often, as runs are taken.
+     * The first save is an interval after this call.
+     *
+     * @param c Checkpoint, with the settings of the simulation filled in
+     * @param dirName Name of the logs directory to save it to
+     * @param seconds Least number of seconds between two saves
+     */
+    public synchronized void setCheckpoint(SimulatorCheckpoint c,
+                                           String dirName, int seconds) {
+        checkpoint = c;
+        checkpointDir = dirName;
+        checkpointInterval = seconds * 1000L;
+        lastCheckpoint = System.currentTimeMillis();
+    }
+}
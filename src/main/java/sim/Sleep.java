@@ -26,41 +26,18 @@ import org.pmw.tinylog.Logger;
 
 /**
  * Handles all simulator sleeps. Used for graph visualization, slowing things
- * down to see the simulation run.
+ * down to see the simulation run. The duration is set per simulation, see
+ * SimulatorContext.
  *
  */
 public class Sleep {
 
 
-    ///////////////////////////////////////////////////////////////////////////
-    // PUBLIC ATTRIBUTES
-    ///////////////////////////////////////////////////////////////////////////
-
-
-    /**
-     * Default sleep value used across the simulator. This is used to slow down
-     * the simulation for better viewing of graph visualization.
-     */
-    protected static int SLEEP = 0;
-
-
     ///////////////////////////////////////////////////////////////////////////
     // PUBLIC METHODS
     ///////////////////////////////////////////////////////////////////////////
 
 
-    /**
-     * Sleep with default duration
-     */
-    public static void sleep() {
-        try {
-            Thread.sleep(SLEEP);
-        } catch (InterruptedException e) {
-            Logger.error(e);
-        }
-    }
-
-
     /**
      * Sleep with custom duration
      *
@@ -21,7 +21,12 @@
 
 package sim;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.graphstream.graph.Edge;
+import org.pmw.tinylog.Level;
 import org.pmw.tinylog.Logger;
 
 import sim.Simulator.ActionSelection;
@@ -33,7 +38,7 @@ import sim.Simulator.NodeSelection;
  * iteration of the simulator.
  *
  */
-public class TimeStep {
+public class TimeStep implements RunEngine {
 
 
     ///////////////////////////////////////////////////////////////////////////
@@ -77,6 +82,9 @@ public class TimeStep {
 
     private GraphVis gv;
     private ExtendedGraph g;
+    private Population p;
+    private Topology topology;
+    private AgentStore agents;
     private RandomSource rs;
     private SimulatorRun simRun;
 
@@ -87,10 +95,24 @@ public class TimeStep {
 
     private final boolean deadEnd;
     private final boolean flag_vis;
+
+
+    /**
+     * Is debug logging on? Checked once, so that the per step log calls don't
+     * build their argument arrays (or box) when nothing would be logged.
+     */
+    private final boolean flag_debug;
     private final NodeSelection ns;
     private final ActionSelection as;
 
 
+    /**
+     * Indices of the two agents picked for an interaction. Reused every time
+     * step to keep the interact action allocation free.
+     */
+    private final int[] agentPair = new int[2];
+
+
     ///////////////////////////////////////////////////////////////////////////
     // PROTECTED ATTRIBUTES
     ///////////////////////////////////////////////////////////////////////////
@@ -100,14 +122,39 @@ public class TimeStep {
     protected static final int ACTION_TRAVERSE = 1;
 
 
+    /*
+     * Start of a snapshot, "INFS", and its format version
+     */
+    protected static final int SNAPSHOT_MAGIC = 0x494E4653;
+    protected static final int SNAPSHOT_VERSION = 1;
+
+
     ///////////////////////////////////////////////////////////////////////////
     // CONSTRUCTOR
     ///////////////////////////////////////////////////////////////////////////
 
 
-    public TimeStep(ExtendedGraph g, int termA, int termB, boolean flag_vis,
-                                                           ActionSelection as) {
+    /**
+     * Create a time step that takes its random choices from the given source.
+     * Runs on different threads each need a source, and a population, of
+     * their own.
+     *
+     * @param g Graph of the simulation, for its settings
+     * @param p Population of this run, agents already distributed
+     * @param rs Random source for this run, init'ed with p
+     * @param gv Graph visualization to update, null if visualization is off
+     */
+    public TimeStep(ExtendedGraph g, Population p, int termA,
+                                                   int termB,
+                                                   ActionSelection as,
+                                                   RandomSource rs,
+                                                   GraphVis gv) {
         this.g = g;
+        this.p = p;
+        this.rs = rs;
+        this.gv = gv;
+        topology = p.getTopology();
+        agents = p.getAgentStore();
         this.termA = termA;
         this.termB = termB;
 
@@ -119,29 +166,23 @@ public class TimeStep {
         ns = g.getNodeSelection();
 
 
-        deadEnd = g.getHasDeadEnd();
+        deadEnd = topology.hasDeadEnd();
         agentDeadEnd = false;
         flag_infectionComplete = false;
         flag_leaderElectionComplete = false;
         flag_allElectionComplete = false;
 
 
-        this.flag_vis = flag_vis;
+        flag_vis = gv != null;
         this.as = as;
-        numAgents = g.getNumAgents();
+        flag_debug = Logger.getLevel().ordinal() <= Level.DEBUG.ordinal();
+        numAgents = p.getNumAgents();
         leaderAID = numAgents - 1;
 
 
         simRun = new SimulatorRun();
         simRun.setNumAgents(numAgents);
 
-
-        if (flag_vis) {
-            gv = GraphVis.getInstance();
-        }
-
-        rs = RandomSource.getInstance();
-
         //simRun.addInfection(step, infectionCounter);
         Logger.debug("TimeStep INIT");
     }
@@ -155,11 +196,14 @@ public class TimeStep {
     /**
      * A single step of the simulation (tick or heart beat).
      */
+    @Override
     public void step() {
-        Logger.debug("Step: {0} BEGIN", step);
+        if (flag_debug) {
+            Logger.debug("Step: {0} BEGIN", step);
+        }
 
         int action = -1;
-        ExtendedNode n = null;
+        int n = -1;
 
         // If the graph structure has no dead end, no point in checking for one
         if (!deadEnd) {
@@ -190,8 +234,13 @@ public class TimeStep {
                     n = rs.nextNodeWeighted(action);
                     break;
             }
+
+            // No node can serve the action, time step is wasted
+            if (n == -1) {
+                action = -1;
+            }
         }
-        else if (agentDeadEnd || g.agentDeadEnd()) {
+        else if (agentDeadEnd || p.agentDeadEnd()) {
             /*
              * Can only do interact now.
              *
@@ -204,10 +253,12 @@ public class TimeStep {
 
             agentDeadEnd = true;
             action = ACTION_INTERACT;
-            n = g.getNode(g.getDeadEnd_nodeID());
+            n = p.getDeadEnd_nodeIndex();
         }
 
-        Logger.debug("ACTION: {0}", action);
+        if (flag_debug) {
+            Logger.debug("ACTION: {0}", action);
+        }
 
 
         /*
@@ -223,40 +274,349 @@ public class TimeStep {
                 break;
         }
 
-        Logger.debug("Step: {0} COMPLETE", step);
+        if (flag_debug) {
+            Logger.debug("Step: {0} COMPLETE", step);
+        }
         step++;
     }
 
 
+    /**
+     * Step until the run completes or maxSteps is hit. Whether the graph
+     * has a dead end is looked at once, rather than on every step as step()
+     * does. Draws are the same either way.
+     */
+    @Override
+    public void runUntilComplete(int maxSteps) {
+        if (flag_debug || flag_vis) {
+            // Logged or drawn step by step
+            while (step < maxSteps && !isComplete()) {
+                step();
+            }
+        }
+        else if (deadEnd) {
+            runDeadEnd(maxSteps);
+        }
+        else {
+            runSelected(maxSteps);
+        }
+
+        // Checking for infection complete as well causes problems.
+        // With the way the algo is structured, if leader declares
+        // election complete before it really happens, infection no
+        // longer occurs. Sim then runs till max time step for no reason
+        if (isComplete()) {
+            Logger.info("STEP: {0}; Cutting off simulation - all " +
+                        "actions complete", step - 1);
+        }
+    }
+
+
     /**
      * Simulation run complete, cleanup
      */
+    @Override
     public void end() {
         Logger.info("Simulation run COMPLETE");
         postmortem();
     }
 
 
+    /**
+     * Write the state of this run, mid-run, so that it can be carried on
+     * later with restore(). Includes the population, the random source
+     * (generator state and rejection counters), counters, flags and markers,
+     * along with the number of nodes and edges and the fingerprint of the
+     * graph (see Topology.fingerprint()). Pass a buffered stream,
+     * compression, if wanted, is up to the caller.
+     *
+     * @param out Where to write to
+     * @throws IOException If it can't be written
+     */
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+
+        // The graph the run is on
+        out.writeInt(topology.numNodes());
+        out.writeLong(topology.numEdges());
+        out.writeLong(topology.fingerprint());
+
+        out.writeInt(termA);
+        out.writeInt(termB);
+        out.writeByte(as.ordinal());
+
+        p.write(out);
+        rs.writeState(out);
+
+        out.writeInt(step);
+        out.writeInt(infectionCounter);
+        out.writeInt(electionCompleteCounter);
+        out.writeInt(actionInteractCounter);
+        out.writeInt(actionTraverseCounter);
+
+        out.writeBoolean(agentDeadEnd);
+        out.writeBoolean(flag_infectionComplete);
+        out.writeBoolean(flag_leaderElectionComplete);
+        out.writeBoolean(flag_allElectionComplete);
+
+        out.writeInt(simRun.getInfectionCompleteStep());
+        out.writeInt(simRun.getInfectionCompleteInteractions());
+        out.writeInt(simRun.getLeaderElectionCompleteStep());
+        out.writeInt(simRun.getLeaderElectionCompleteInteractions());
+        out.writeInt(simRun.getAllElectionCompleteStep());
+        out.writeInt(simRun.getAllElectionCompleteInteractions());
+    }
+
+
+    /**
+     * Carry on a run from a snapshot, with the terms it was taken with. Given
+     * the same graph, the run goes on exactly as it would have, had it not
+     * been stopped.
+     *
+     * @param in Where to read the snapshot from
+     * @param g Graph of the simulation, same as that of the snapshot
+     * @param p Population to load the snapshot into
+     * @param rs Random source to load the snapshot into
+     * @param gv Graph visualization to update, null if visualization is off
+     * @return Time step that carries on the run
+     * @throws IOException If it can't be read, or isn't a snapshot of a run
+     *                     over this graph (its number of nodes, number of
+     *                     edges or fingerprint differ)
+     */
+    public static TimeStep restore(DataInput in, ExtendedGraph g,
+                                                 Population p,
+                                                 RandomSource rs,
+                                                 GraphVis gv)
+                                                 throws IOException {
+        return restore(in, g, p, rs, gv, false, 0, 0);
+    }
+
+
+    /**
+     * Carry on a run from a snapshot, with other terms (what-if). The run is
+     * the same up to the snapshot, and goes its own way from there.
+     *
+     * @param in Where to read the snapshot from
+     * @param g Graph of the simulation, same as that of the snapshot
+     * @param p Population to load the snapshot into
+     * @param termA Term A of the termination condition from now on
+     * @param termB Term B of the termination condition from now on
+     * @param rs Random source to load the snapshot into
+     * @param gv Graph visualization to update, null if visualization is off
+     * @return Time step that carries on the run
+     * @throws IOException If it can't be read, or isn't a snapshot of a run
+     *                     over this graph (its number of nodes, number of
+     *                     edges or fingerprint differ)
+     */
+    public static TimeStep restore(DataInput in, ExtendedGraph g,
+                                                 Population p,
+                                                 int termA,
+                                                 int termB,
+                                                 RandomSource rs,
+                                                 GraphVis gv)
+                                                 throws IOException {
+        return restore(in, g, p, rs, gv, true, termA, termB);
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////
     // PUBLIC METHODS - GETTERS
     ///////////////////////////////////////////////////////////////////////////
 
 
+    /**
+     * The current time step, the number of steps taken so far
+     *
+     * @return Time step
+     */
+    public int getStep() {
+        return step;
+    }
+
+
     public boolean isFlag_infectionComplete() {
         return flag_infectionComplete;
     }
 
 
+    @Override
     public boolean isFlag_leaderElectionComplete() {
         return flag_leaderElectionComplete;
     }
 
 
+    @Override
     public boolean isFlag_allElectionComplete() {
         return flag_allElectionComplete;
     }
 
 
+    /**
+     * Stats of this run. Complete once end() has been called.
+     *
+     * @return Simulation run data
+     */
+    @Override
+    public SimulatorRun getSimRun() {
+        return simRun;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS - SNAPSHOT
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private static TimeStep restore(DataInput in, ExtendedGraph g,
+                                                  Population p,
+                                                  RandomSource rs,
+                                                  GraphVis gv,
+                                                  boolean newTerms,
+                                                  int termA,
+                                                  int termB)
+                                                  throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a run snapshot");
+        }
+
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Run snapshot version " + version +
+                                  " not supported");
+        }
+
+        Topology topology = p.getTopology();
+        if (in.readInt() != topology.numNodes() ||
+            in.readLong() != topology.numEdges() ||
+            in.readLong() != topology.fingerprint()) {
+            throw new IOException("Run snapshot of a different graph");
+        }
+
+        int snapshotTermA = in.readInt();
+        int snapshotTermB = in.readInt();
+        ActionSelection as = ActionSelection.values()[in.readByte()];
+
+        if (!newTerms) {
+            termA = snapshotTermA;
+            termB = snapshotTermB;
+        }
+
+        p.read(in);
+
+        // init() resets the rejection counters, so it goes before readState()
+        rs.init(g, p);
+        rs.readState(in);
+
+        TimeStep ts = new TimeStep(g, p, termA, termB, as, rs, gv);
+        ts.readState(in);
+
+        if (gv != null) {
+            for (int i = 0; i < p.getTopology().numNodes(); i++) {
+                gv.updateNode(i);
+            }
+        }
+
+        return ts;
+    }
+
+
+    /**
+     * Counters, flags and markers of a snapshot, the rest of it having been
+     * read by restore()
+     */
+    private void readState(DataInput in) throws IOException {
+        step = in.readInt();
+        infectionCounter = in.readInt();
+        electionCompleteCounter = in.readInt();
+        actionInteractCounter = in.readInt();
+        actionTraverseCounter = in.readInt();
+
+        agentDeadEnd = in.readBoolean();
+        flag_infectionComplete = in.readBoolean();
+        flag_leaderElectionComplete = in.readBoolean();
+        flag_allElectionComplete = in.readBoolean();
+
+        simRun.setInfectionCompleteStep(in.readInt());
+        simRun.setInfectionCompleteInteractions(in.readInt());
+        simRun.setLeaderElectionCompleteStep(in.readInt());
+        simRun.setLeaderElectionCompleteInteractions(in.readInt());
+        simRun.setAllElectionCompleteStep(in.readInt());
+        simRun.setAllElectionCompleteInteractions(in.readInt());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS - LOOPS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * The graph has no dead end. Same as step(), with logging and
+     * visualization off. The selection modes do not change during a run, so
+     * the branches on them always go the same way. There is a single loop
+     * rather than one per configuration, as no TimeStepBenchmark numbers
+     * show that one per configuration is any faster.
+     */
+    private void runSelected(int maxSteps) {
+        boolean weightedActions = as == ActionSelection.WEIGHTED;
+        boolean weightedNodes = ns == NodeSelection.WEIGHTED;
+
+        while (step < maxSteps && !isComplete()) {
+            int action = weightedActions ? rs.nextActionWeighted()
+                                         : rs.nextAction();
+            int n = weightedNodes ? rs.nextNodeWeighted(action)
+                                  : rs.nextNode(action);
+
+            act(action, n);
+            step++;
+        }
+    }
+
+
+    /**
+     * The graph has a dead end. Until all agents are in it, step() does
+     * nothing, and so nothing can change. Once they are, every step is an
+     * interaction there.
+     */
+    private void runDeadEnd(int maxSteps) {
+        if (!agentDeadEnd && !p.agentDeadEnd()) {
+            step = maxSteps;
+            return;
+        }
+
+        agentDeadEnd = true;
+        int n = p.getDeadEnd_nodeIndex();
+
+        while (step < maxSteps && !isComplete()) {
+            actionInteract(n);
+            step++;
+        }
+    }
+
+
+    /**
+     * Execute an action on node n, if a node could serve it
+     */
+    private void act(int action, int n) {
+        if (n == -1) {
+            return;
+        }
+
+        if (action == ACTION_INTERACT) {
+            actionInteract(n);
+        }
+        else {
+            actionTraverse(n);
+        }
+    }
+
+
+    private boolean isComplete() {
+        return flag_leaderElectionComplete && flag_allElectionComplete;
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS - ACTIONS
     ///////////////////////////////////////////////////////////////////////////
@@ -268,60 +628,70 @@ public class TimeStep {
      *
      * This is the interact action from the original paper.
      *
-     * @param n Node to selected two random agents from
+     * @param n Index of the node to selected two random agents from
      */
-    private void actionInteract(ExtendedNode n) {
+    private void actionInteract(int n) {
         // Pick a random pair of agents in this node
-        Agent[] agent_pair = rs.nextAgentPair(n);
+        rs.nextAgentPair(n, agentPair);
 
-        // The two randomly selected agents that will interact
-        Agent agent_i = agent_pair[0];
-        Agent agent_j = agent_pair[1];
+        // The two randomly selected agents that will interact (their slots)
+        int agent_i = p.getAgent(n, agentPair[0]);
+        int agent_j = p.getAgent(n, agentPair[1]);
 
-        Logger.debug("Agent i - {0}", agent_i);
-        Logger.debug("Agent j - {0}", agent_j);
+        if (flag_debug) {
+            Logger.debug("Agent i - {0}", agents.getAgent(agent_i));
+            Logger.debug("Agent j - {0}", agents.getAgent(agent_j));
+        }
 
 
         /*
          * If either agent believes that the election is complete, spread the
          * word to the other
          */
-        if (agent_i.isElectionComplete() || agent_j.isElectionComplete()) {
-            agent_i.setElectionComplete(true);
-            agent_j.setElectionComplete(true);
+        if (agents.isElectionComplete(agent_i) ||
+            agents.isElectionComplete(agent_j)) {
+
+            p.setElectionComplete(n, agent_i);
+            p.setElectionComplete(n, agent_j);
 
             // TODO: Infection should occur here as well
 
             // DO NOT ALLOW NON-REAL INFECTIONS TO INCREMENT THIS COUNTER, OR
             // ANY OF THE OTHER ONES FOR THAT MATTER
             if (!flag_allElectionComplete &&
-                (agent_i.getLeaderAID() == leaderAID ||
-                 agent_j.getLeaderAID() == leaderAID)) {
+                (agents.getLeaderAID(agent_i) == leaderAID ||
+                 agents.getLeaderAID(agent_j) == leaderAID)) {
 
                 electionCompleteCounter++;
                 flag_electionComplete();
             }
 
 
-            Logger.debug("Election complete from agents: {0}, {1}", agent_i,
-                                                                    agent_j);
+            if (flag_debug) {
+                Logger.debug("Election complete from agents: {0}, {1}",
+                             agents.getAgent(agent_i),
+                             agents.getAgent(agent_j));
+            }
         }
         else {
             // Compare who the agents believe is the leader
-            int diff = agent_i.getLeaderAID() - agent_j.getLeaderAID();
+            int diff = agents.getLeaderAID(agent_i) -
+                       agents.getLeaderAID(agent_j);
 
             if (diff > 0) {
                 // Agent i infects agent j
-                agentInfection(agent_i, agent_j);
-                possibleLeader(agent_i);
+                agentInfection(n, agent_i, agent_j);
+                possibleLeader(n, agent_i);
             }
             else if (diff < 0) {
                 // Agent j infects agent i
-                agentInfection(agent_j, agent_i);
-                possibleLeader(agent_j);
+                agentInfection(n, agent_j, agent_i);
+                possibleLeader(n, agent_j);
             }
             else {
-                Logger.debug("Tie, both infected by the same agent");
+                if (flag_debug) {
+                    Logger.debug("Tie, both infected by the same agent");
+                }
 
                 metFollower(agent_i);
                 metFollower(agent_j);
@@ -331,8 +701,8 @@ public class TimeStep {
                  * check here as well, the leader NEVER determines that the
                  * election is complete
                  */
-                isElectionComplete(agent_i);
-                isElectionComplete(agent_j);
+                isElectionComplete(n, agent_i);
+                isElectionComplete(n, agent_j);
             }
         }
         actionInteractCounter++;
@@ -340,7 +710,7 @@ public class TimeStep {
 
         // Update the view
         if (flag_vis) {
-            gv.updateNode(n.getId());
+            gv.updateNode(n);
             gv.updateInfectionLabel();
             gv.updateAllElectionCompleteLabel();
         }
@@ -354,34 +724,38 @@ public class TimeStep {
      * This is the newly added action from the original paper, as result of
      * performing the simulation on a graph.
      *
-     * @param n Node that will have an agent leave from it
+     * @param n Index of the node that will have an agent leave from it
      */
-    private void actionTraverse(ExtendedNode n) {
+    private void actionTraverse(int n) {
         // Pick a random agent in the current node
         // Remove it from the current Node
-        Agent agent = n.removeAgent(rs.nextAgentIndex(n));
+        int agent = p.removeAgent(n, rs.nextAgentIndex(n));
 
         // Pick a random out going edge
-        Edge e = rs.nextLeavingEdge(n);
+        int k = rs.nextLeavingEdge(n);
 
         // Get the outgoing node
-        ExtendedNode outGoingNode = e.getOpposite(n);
+        int outGoingNode = topology.neighbour(n, k);
 
         // Add agent to this node
-        outGoingNode.addAgent(agent);
+        p.addAgent(outGoingNode, agent);
 
         actionTraverseCounter++;
 
 
         // Update the view
         if (flag_vis) {
-            gv.updateNode(n.getId());
+            Edge e = g.getEdge(topology.edge(n, k));
+
+            gv.updateNode(n);
             gv.updateEdge(e, true);
-            gv.updateNode(outGoingNode.getId());
+            gv.updateNode(outGoingNode);
             gv.updateEdge(e, false);
         }
 
-        Logger.debug("Agent traversed!");
+        if (flag_debug) {
+            Logger.debug("Agent traversed!");
+        }
     }
 
 
@@ -390,9 +764,9 @@ public class TimeStep {
     ///////////////////////////////////////////////////////////////////////////
 
 
-    private void agentInfection(Agent infector, Agent infected) {
-        int infectorLeaderAID = infector.getLeaderAID();
-        infected.setLeaderAID(infectorLeaderAID);
+    private void agentInfection(int n, int infector, int infected) {
+        int infectorLeaderAID = agents.getLeaderAID(infector);
+        p.setLeaderAID(n, infected, infectorLeaderAID);
 
         if (infectorLeaderAID == leaderAID) {
             infectionCounter++;
@@ -410,14 +784,18 @@ public class TimeStep {
     }
 
 
-    private boolean possibleLeader(Agent agent) {
+    private boolean possibleLeader(int n, int agent) {
         // TODO: Explain meaning of boolean return
         // Check if the agent interacted with anyone with a higher AID
-        if (agent.getLeaderAID() == agent.getAID()) {
-            agent.converted();
-            Logger.debug("Possible leader: {0}", agent);
+        // (the slot is the AID)
+        if (agents.getLeaderAID(agent) == agent) {
+            agents.converted(agent);
+
+            if (flag_debug) {
+                Logger.debug("Possible leader: {0}", agents.getAgent(agent));
+            }
 
-            isElectionComplete(agent);
+            isElectionComplete(n, agent);
 
             return true;
         }
@@ -426,19 +804,20 @@ public class TimeStep {
     }
 
 
-    private boolean isElectionComplete(Agent agent) {
-        if ((termB + (termA * agent.getConversions())) < agent.getMetFollowers()) {
-            agent.setLeader(true);
-            agent.setElectionComplete(true);
+    private boolean isElectionComplete(int n, int agent) {
+        if ((termB + (termA * agents.getConversions(agent))) <
+                                            agents.getMetFollowers(agent)) {
+            agents.setLeader(agent, true);
+            p.setElectionComplete(n, agent);
 
             Logger.info("STEP: {0}; Agent believes election is complete and " +
                         "is the leader " +
                         "\n\t # of interactions: {1}; " +
                         "{2}",
-                        step, actionInteractCounter, agent);
+                        step, actionInteractCounter, agents.getAgent(agent));
 
             // Is this the real leader that believes election is complete?
-            if (agent.getAID() == leaderAID) {
+            if (agent == leaderAID) {
                 simRun.setLeaderElectionCompleteStep(step);
                 simRun.setLeaderElectionCompleteInteractions(actionInteractCounter);
 
@@ -466,10 +845,14 @@ public class TimeStep {
     }
 
 
-    private boolean metFollower(Agent agent) {
-        if (agent.getLeaderAID() == agent.getAID()) {
-            agent.metFollower();
-            Logger.debug("Agent met a follwer: {0}", agent);
+    private boolean metFollower(int agent) {
+        if (agents.getLeaderAID(agent) == agent) {
+            agents.metFollower(agent);
+
+            if (flag_debug) {
+                Logger.debug("Agent met a follwer: {0}", agents.getAgent(agent));
+            }
+
             return true;
         }
 
@@ -504,9 +887,6 @@ public class TimeStep {
         simRun.setInteractions(actionInteractCounter);
         simRun.setTraversals(actionTraverseCounter);
 
-        // Add it to the list of all runs
-        Simulator.getSimData().add(simRun);
-
         /*
          * Log stats
          */
@@ -514,6 +894,8 @@ public class TimeStep {
         Logger.info("# of agents that believe election is COMPLETE: " + electionCompleteCounter + "/" + numAgents);
         Logger.info("# of agent INTERACTIONS: " + actionInteractCounter);
         Logger.info("# of agent TRAVERSALS: " + actionTraverseCounter);
+        Logger.info("# of node selection REJECTIONS: " + rs.getRejections());
+        Logger.info("# of node selection REJECTIONS SAVED (expected): " + rs.getRejectionsSaved());
         Logger.info("MARKER - Infection Complete Step: " + simRun.getInfectionCompleteStep());
         Logger.info("MARKER - Leader Election Complete Step: " + simRun.getLeaderElectionCompleteStep());
         Logger.info("MARKER - All Election Complete Step: " + simRun.getAllElectionCompleteStep());
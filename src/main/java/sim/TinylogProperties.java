@@ -23,6 +23,7 @@ package sim;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -105,15 +106,27 @@ public class TinylogProperties {
 
 
         try {
-            // If the 'logs' directory does not exist, create it
+            // If the 'logs' directory does not exist, create it. Another
+            // simulation may do the same at the same time, that's fine.
             if (Files.notExists(path)) {
-                Files.createDirectory(path);
+                Files.createDirectories(path);
                 Logger.info("Creating 'logs' directory");
             }
 
-            // Create the log directory for THIS specific simulation
-            path = FileSystems.getDefault().getPath("logs", dirName);
-            Files.createDirectory(path);
+            /*
+             * Create the log directory for THIS specific simulation. Another
+             * simulation may have been created within the same second (in
+             * this JVM or another), if so add a suffix.
+             */
+            for (int i = 2; ; i++) {
+                try {
+                    path = FileSystems.getDefault().getPath("logs", dirName);
+                    Files.createDirectory(path);
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    dirName = "log." + timestamp + "-" + i;
+                }
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,131 @@
+/*
+ * Topology.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+
+/**
+ * Structure of the graph the simulation runs on, as seen by a run. Nodes are
+ * dense indices from 0 to numNodes() - 1, the same as the node indices of the
+ * ExtendedGraph it was made from. The leaving edges of each node are numbered
+ * from 0 to outDegree() - 1, in the order of the ExtendedGraph.
+ *
+ * Immutable, so runs on different threads can share one.
+ *
+ */
+public abstract class Topology {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public abstract int numNodes();
+
+
+    /**
+     * Number of leaving (outgoing) edges of a node
+     *
+     * @param node Index of the node
+     * @return Out degree
+     */
+    public abstract int outDegree(int node);
+
+
+    /**
+     * Node at the other end of a leaving edge
+     *
+     * @param node Index of the node
+     * @param k Leaving edge of the node, between 0 and outDegree(node) - 1
+     * @return Index of the neighbour
+     */
+    public abstract int neighbour(int node, int k);
+
+
+    /**
+     * Edge of the ExtendedGraph that a leaving edge stands for. Only needed
+     * to visualize traversals.
+     *
+     * @param node Index of the node
+     * @param k Leaving edge of the node, between 0 and outDegree(node) - 1
+     * @return Index of the edge in the ExtendedGraph
+     */
+    public abstract int edge(int node, int k);
+
+
+    /**
+     * Does this graph have a dead end? That is, a node with an out degree of
+     * 0, no escape.
+     *
+     * @return True if the graph has one or more dead end(s), false otherwise
+     */
+    public boolean hasDeadEnd() {
+        for (int i = 0; i < numNodes(); i++) {
+            if (outDegree(i) == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Number of leaving edges across the whole graph. An undirected edge
+     * counts once for each of its ends.
+     *
+     * @return Number of leaving edges
+     */
+    public long numEdges() {
+        long edges = 0;
+
+        for (int i = 0; i < numNodes(); i++) {
+            edges += outDegree(i);
+        }
+
+        return edges;
+    }
+
+
+    /**
+     * Hash of the structure of the graph, the neighbours of every node in
+     * order. Along with numNodes() and numEdges(), tells graphs apart, say
+     * to check that a checkpoint or snapshot is of this graph. Takes a pass
+     * over every edge.
+     *
+     * @return Fingerprint of the graph
+     */
+    public long fingerprint() {
+        long hash = numNodes();
+
+        for (int i = 0; i < numNodes(); i++) {
+            int degree = outDegree(i);
+            hash = 31 * hash + degree;
+
+            for (int k = 0; k < degree; k++) {
+                hash = 31 * hash + neighbour(i, k);
+            }
+        }
+
+        return Xoroshiro128PlusGenerator.mix64(hash);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Xoroshiro128PlusGenerator.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * Fast, non-cryptographic generator. This is xoroshiro128+ by David Blackman
+ * and Sebastiano Vigna, with its 128 bits of state expanded from a single 64
+ * bit seed via SplitMix64 (as recommended by the authors).
+ *
+ * Not thread safe, each simulation thread needs its own instance.
+ *
+ * http://prng.di.unimi.it/
+ */
+public class Xoroshiro128PlusGenerator implements RandomGenerator {
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * SplitMix64 increment (golden ratio)
+     */
+    protected static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE ATTRIBUTES
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * 2^-53, used to turn the top 53 bits of a long into a double
+     */
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+
+    private final long seed;
+
+
+    private long s0;
+    private long s1;
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTOR
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    public Xoroshiro128PlusGenerator(long seed) {
+        this.seed = seed;
+
+        s0 = mix64(seed + GOLDEN_GAMMA);
+        s1 = mix64(seed + 2 * GOLDEN_GAMMA);
+
+        // All zero state is the one state the generator can never leave
+        if (s0 == 0 && s1 == 0) {
+            s1 = GOLDEN_GAMMA;
+        }
+    }
+
+
+    private Xoroshiro128PlusGenerator(long seed, long s0, long s1) {
+        this.seed = seed;
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Read back a generator written by writeState()
+     *
+     * @param in Where to read from
+     * @return Generator, in the state it was written in
+     * @throws IOException If it can't be read
+     */
+    public static Xoroshiro128PlusGenerator readState(DataInput in)
+                                                        throws IOException {
+        return new Xoroshiro128PlusGenerator(in.readLong(), in.readLong(),
+                                                            in.readLong());
+    }
+
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(seed);
+        out.writeLong(s0);
+        out.writeLong(s1);
+    }
+
+
+    @Override
+    public long nextLong() {
+        final long a = s0;
+        long b = s1;
+        final long result = a + b;
+
+        b ^= a;
+        s0 = Long.rotateLeft(a, 24) ^ b ^ (b << 16);
+        s1 = Long.rotateLeft(b, 37);
+
+        return result;
+    }
+
+
+    /**
+     * Unbiased bounded int. Multiply-shift of the top 32 bits, with rejection
+     * of the few values that would bias the result (Lemire, 2019). Almost
+     * never needs more than one draw, and never divides in the common case.
+     */
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+
+        if (low < bound) {
+            // 2^32 mod bound
+            long threshold = (0x100000000L - bound) % bound;
+
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+
+        return (int) (m >>> 32);
+    }
+
+
+    @Override
+    public double nextDouble() {
+        // Upper bits of xoroshiro128+ are the strongest
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PROTECTED METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * SplitMix64 finalizer. Bijective, so different inputs always give
+     * different outputs.
+     *
+     * @param z Value to mix
+     * @return Mixed value
+     */
+    protected static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
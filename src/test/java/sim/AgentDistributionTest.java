@@ -34,6 +34,7 @@ import org.junit.Test;
 public class AgentDistributionTest {
 
     private ExtendedGraph g;
+    private RandomSource rs;
     private AgentDistribution ad;
 
     @Before
@@ -54,7 +55,8 @@ public class AgentDistributionTest {
         g.addEdge("EA", "E", "A");
         g.addEdge("EF", "E", "F");
 
-        ad = new AgentDistribution(false);
+        rs = new RandomSource();
+        ad = new AgentDistribution(rs, null);
     }
 
 
@@ -70,9 +72,10 @@ public class AgentDistributionTest {
         g.setSINGLE_nodeID("E");
 
         // Init RandomSource and AgentDistribution
-        RandomSource.getInstance().init(g);
+        g.reset();
+        rs.init(g, g.getPopulation());
 
-        ad.init(g);
+        ad.init(g, g.getPopulation());
         ad.execute();
 
         ExtendedNode n = g.getNode(g.getSINGLE_nodeID());
@@ -92,12 +95,13 @@ public class AgentDistributionTest {
         g.setAgentDistribution(Distribution.RANDOM_SINGLE);
 
         // Init RandomSource and AgentDistribution
-        RandomSource.getInstance().init(g);
+        g.reset();
+        rs.init(g, g.getPopulation());
 
-        ad.init(g);
+        ad.init(g, g.getPopulation());
         ad.execute();
 
-        ExtendedNode n = g.getNode(g.getRANDOM_SINGLE_nodeID());
+        ExtendedNode n = g.getNode(ad.getRANDOM_SINGLE_nodeIndex());
 
         assertEquals(numAgents, n.getAgentCount());
     }
@@ -115,9 +119,10 @@ public class AgentDistributionTest {
         g.setAgentDistribution(Distribution.RANDOM_SPREAD);
 
         // Init RandomSource and AgentDistribution
-        RandomSource.getInstance().init(g);
+        g.reset();
+        rs.init(g, g.getPopulation());
 
-        ad.init(g);
+        ad.init(g, g.getPopulation());
         ad.execute();
 
         // Count the number of agents across the graph
@@ -140,11 +145,12 @@ public class AgentDistributionTest {
     @Test
     public void evenSpread_agentCountTest() {
         int numAgents = 8573;
-        RandomSource.getInstance().init(g);
         g.setNumAgents(numAgents);
         g.setAgentDistribution(Distribution.EVEN_SPREAD);
+        g.reset();
+        rs.init(g, g.getPopulation());
 
-        ad.init(g);
+        ad.init(g, g.getPopulation());
         ad.execute();
 
         int agentCount = 0;
@@ -163,11 +169,12 @@ public class AgentDistributionTest {
     @Test
     public void chainEnds_agentCountTest() {
         int numAgents = 1017;
-        RandomSource.getInstance().init(g);
         g.setNumAgents(numAgents);
         g.setAgentDistribution(Distribution.CHAIN_ENDS);
+        g.reset();
+        rs.init(g, g.getPopulation());
 
-        ad.init(g);
+        ad.init(g, g.getPopulation());
         ad.execute();
 
 
@@ -0,0 +1,63 @@
+/*
+ * AgentStoreTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class AgentStoreTest {
+
+
+    /**
+     * Test if the store starts, and resets, every agent in the same state as
+     * a new Agent
+     */
+    @Test
+    public void resetTest() {
+        AgentStore store = new AgentStore(3);
+
+        for (int i = 0; i < store.size(); i++) {
+            assertTrue(store.getAgent(i).equals(new Agent(i)));
+        }
+
+        store.setLeaderAID(0, 2);
+        store.converted(2);
+        store.metFollower(1);
+        store.setLeader(2, true);
+        store.setElectionComplete(1, true);
+
+        assertFalse(store.getAgent(0).equals(new Agent(0)));
+        assertTrue(store.isLeader(2));
+        assertFalse(store.isElectionComplete(2));
+        assertTrue(store.isElectionComplete(1));
+
+        store.reset();
+
+        for (int i = 0; i < store.size(); i++) {
+            assertTrue(store.getAgent(i).equals(new Agent(i)));
+        }
+    }
+}
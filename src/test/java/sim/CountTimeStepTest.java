@@ -0,0 +1,232 @@
+/*
+ * CountTimeStepTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pmw.tinylog.Configurator;
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.Logger;
+
+import sim.AgentDistribution.Distribution;
+import sim.Simulator.ActionSelection;
+import sim.Simulator.NodeSelection;
+
+
+public class CountTimeStepTest {
+
+    private static final int NUM_AGENTS = 50;
+    private static final int RUNS = 6000;
+    private static final int MAX_STEPS = 100000;
+
+    private Level logLevel;
+
+
+    @Before
+    public void preTest() {
+        logLevel = Logger.getLevel();
+        Configurator.currentConfig().level(Level.OFF).activate();
+    }
+
+
+    @After
+    public void postTest() {
+        Configurator.currentConfig().level(logLevel).activate();
+    }
+
+
+    /**
+     * Test if a completed run has every agent infected, and believing that
+     * election is complete
+     */
+    @Test
+    public void completeTest() {
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+
+        CountTimeStep ts = new CountTimeStep(NUM_AGENTS, 4, 0, rs);
+        SimulatorRun r = run(ts);
+
+        assertTrue(ts.isFlag_infectionComplete());
+        assertEquals(NUM_AGENTS, r.getInfections());
+        assertEquals(NUM_AGENTS, r.getElectionCompleteCount());
+        assertEquals(0, r.getTraversals());
+        assertEquals(r.getInfectionCompleteStep(),
+                     r.getInfectionCompleteInteractions());
+    }
+
+
+    /**
+     * Test if the markers, stepping one step at a time, have the same means
+     * as those of TimeStep, on a single node graph
+     */
+    @Test
+    public void markersTest() {
+        assertSameMarkers(NUM_AGENTS, 4, 0, false);
+    }
+
+
+    /**
+     * Test if the markers, skipping no-op steps, have the same means as those
+     * of TimeStep, on a single node graph
+     */
+    @Test
+    public void skipMarkersTest() {
+        assertSameMarkers(NUM_AGENTS, 4, 0, true);
+        assertSameMarkers(20, 2, 3, true);
+        assertSameMarkers(3, 1, 0, true);
+    }
+
+
+    /**
+     * Test if a run of two agents, whose markers are known, comes out the
+     * same skipping or not
+     */
+    @Test
+    public void twoAgentsTest() {
+        for (int skip = 0; skip < 2; skip++) {
+            RandomSource rs = new RandomSource();
+            rs.seed(RandomSource.Generator.FAST, 2552);
+
+            CountTimeStep ts = new CountTimeStep(2, 4, 1, rs);
+            SimulatorRun r = skip == 1 ? skip(ts, MAX_STEPS) : run(ts);
+
+            // Infected on the first step, then the leader has to meet its
+            // follower termA + termB + 1 times
+            assertEquals(0, r.getInfectionCompleteStep());
+            assertEquals(6, r.getLeaderElectionCompleteStep());
+            assertEquals(7, r.getAllElectionCompleteStep());
+            assertEquals(8, r.getInteractions());
+        }
+    }
+
+
+    /**
+     * Test if skipping stops at the max number of steps
+     */
+    @Test
+    public void maxStepsTest() {
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+
+        SimulatorRun r = skip(new CountTimeStep(NUM_AGENTS, 4, 0, rs), 300);
+
+        assertEquals(300, r.getInteractions());
+        assertEquals(0, r.getAllElectionCompleteStep());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Compare the means of the markers of RUNS runs of both engines, within
+     * 3 standard errors
+     */
+    private static void assertSameMarkers(int numAgents, int termA, int termB,
+                                          boolean skip) {
+        double[][] agent = new double[3][2];
+        double[][] count = new double[3][2];
+
+        for (int i = 0; i < RUNS; i++) {
+            RandomSource rs = new RandomSource();
+            rs.seed(RandomSource.Generator.FAST,
+                    RandomSource.runSeed(7, numAgents, i));
+            add(agent, run(timeStep(numAgents, termA, termB, rs)));
+
+            rs = new RandomSource();
+            rs.seed(RandomSource.Generator.FAST,
+                    RandomSource.runSeed(11, numAgents, i));
+            CountTimeStep ts = new CountTimeStep(numAgents, termA, termB, rs);
+            add(count, skip ? skip(ts, MAX_STEPS) : run(ts));
+        }
+
+        for (int m = 0; m < 3; m++) {
+            double meanAgent = agent[m][0] / RUNS;
+            double meanCount = count[m][0] / RUNS;
+            double varAgent = agent[m][1] / RUNS - meanAgent * meanAgent;
+            double varCount = count[m][1] / RUNS - meanCount * meanCount;
+            double se = Math.sqrt((varAgent + varCount) / RUNS);
+
+            assertTrue(numAgents + " agents, marker " + m + ": " + meanAgent +
+                       " vs " + meanCount,
+                       Math.abs(meanAgent - meanCount) <= 3 * se);
+        }
+    }
+
+
+    private static TimeStep timeStep(int numAgents, int termA, int termB,
+                                     RandomSource rs) {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        g.addNode("A");
+        TestSupport.populate(g, numAgents, Distribution.SINGLE,
+                             NodeSelection.NON_WEIGHTED, rs);
+
+        return new TimeStep(g, g.getPopulation(), termA, termB,
+                            ActionSelection.NON_WEIGHTED, rs, null);
+    }
+
+
+    private static SimulatorRun run(RunEngine ts) {
+        for (int i = 0; i < MAX_STEPS; i++) {
+            ts.step();
+
+            if (ts.isFlag_leaderElectionComplete() &&
+                ts.isFlag_allElectionComplete()) {
+                break;
+            }
+        }
+
+        ts.end();
+        return ts.getSimRun();
+    }
+
+
+    private static SimulatorRun skip(RunEngine ts, int maxSteps) {
+        ts.runUntilComplete(maxSteps);
+        ts.end();
+        return ts.getSimRun();
+    }
+
+
+    /**
+     * Sum and sum of squares of the infection, leader election and all
+     * election complete steps
+     */
+    private static void add(double[][] sums, SimulatorRun r) {
+        double[] markers = {r.getInfectionCompleteStep(),
+                            r.getLeaderElectionCompleteStep(),
+                            r.getAllElectionCompleteStep()};
+
+        for (int m = 0; m < 3; m++) {
+            sums[m][0] += markers[m];
+            sums[m][1] += markers[m] * markers[m];
+        }
+    }
+}
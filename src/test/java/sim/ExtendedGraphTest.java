@@ -0,0 +1,198 @@
+/*
+ * ExtendedGraphTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.graphstream.graph.Edge;
+import org.junit.Test;
+
+
+public class ExtendedGraphTest {
+
+
+    /**
+     * Test if the graph's agent counts follow agents added to and removed from
+     * its nodes
+     */
+    @Test
+    public void graphAgentCountsTest() {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        g.addNode("A");
+        g.addNode("B");
+        g.addNode("C");
+        g.setNumAgents(3);
+        g.reset();
+
+        ExtendedNode a = g.getNode("A");
+        ExtendedNode c = g.getNode("C");
+        a.addAgent(0);
+        a.addAgent(1);
+        c.addAgent(2);
+
+        FenwickTree counts = g.getAgentCounts();
+        assertEquals(3, counts.total());
+        assertEquals(2, counts.get(a.getIndex()));
+
+        c.addAgent(a.removeAgent(0));
+        assertEquals(1, counts.get(a.getIndex()));
+        assertEquals(2, counts.get(c.getIndex()));
+
+        g.reset();
+        assertEquals(0, g.getAgentCounts().total());
+    }
+
+
+    /**
+     * Test if the nodes that can serve each action follow the agents
+     */
+    @Test
+    public void eligibleNodesTest() {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        g.addNode("A");
+        g.addNode("B");
+        g.addNode("C");
+        g.addEdge("AB", "A", "B", true);
+        g.setNumAgents(3);
+        g.reset();
+
+        ExtendedNode a = g.getNode("A");
+        ExtendedNode b = g.getNode("B");
+        a.addAgent(0);
+        a.addAgent(1);
+        b.addAgent(2);
+
+        // A can interact and traverse, B is a dead end with a single agent
+        assertTrue(g.getInteractNodes().contains(a.getIndex()));
+        assertTrue(g.getTraverseNodes().contains(a.getIndex()));
+        assertFalse(g.getInteractNodes().contains(b.getIndex()));
+        assertFalse(g.getTraverseNodes().contains(b.getIndex()));
+        assertEquals(2, g.getInteractCounts().total());
+        assertEquals(2, g.getTraverseCounts().total());
+
+        b.addAgent(a.removeAgent(0));
+
+        // A can now only traverse, B only interact
+        assertFalse(g.getInteractNodes().contains(a.getIndex()));
+        assertTrue(g.getTraverseNodes().contains(a.getIndex()));
+        assertTrue(g.getInteractNodes().contains(b.getIndex()));
+        assertEquals(1, g.getInteractNodes().size());
+        assertEquals(2, g.getInteractCounts().get(b.getIndex()));
+        assertEquals(1, g.getTraverseCounts().total());
+    }
+
+
+    /**
+     * Test if removing an agent moves the last agent into its place, and
+     * keeps every other agent
+     */
+    @Test
+    public void removeAgentTest() {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        g.addNode("A");
+        g.setNumAgents(4);
+        g.reset();
+
+        ExtendedNode a = g.getNode("A");
+        int[] agents = {0, 1, 2, 3};
+        a.addAgents(agents, 0, agents.length);
+
+        assertEquals(1, a.removeAgent(1));
+        assertEquals(3, a.getAgentCount());
+        assertEquals(3, a.getAgent(1));
+
+        assertEquals(0, a.removeAgent(0));
+        assertEquals(2, a.getAgentCount());
+        assertEquals(2, a.getAgent(0));
+        assertEquals(2, g.getAgentCounts().total());
+    }
+
+
+    /**
+     * Test if a copy has the same nodes, by index, and the same leaving edges
+     * in the same order for each node
+     */
+    @Test
+    public void copyTest() {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        g.addNode("A");
+        g.addNode("B");
+        g.addNode("C");
+        g.addNode("D");
+        g.addNode("E");
+        g.addEdge("AB", "A", "B", true);
+        g.addEdge("CA", "C", "A");
+        g.addEdge("DA", "D", "A", true);
+        g.addEdge("AE", "A", "E", true);
+        g.setNumAgents(5);
+
+        ExtendedGraph copy = g.copy();
+        assertEquals(g.getNumAgents(), copy.getNumAgents());
+
+        for (int i = 0; i < g.getNodeCount(); i++) {
+            ExtendedNode n = g.getNode(i);
+            ExtendedNode c = copy.getNode(i);
+            assertEquals(n.getId(), c.getId());
+            assertEquals(n.getOutDegree(), c.getOutDegree());
+
+            for (int k = 0; k < n.getOutDegree(); k++) {
+                assertEquals(n.getLeavingEdge(k).getId(),
+                             c.getLeavingEdge(k).getId());
+            }
+        }
+    }
+
+
+    /**
+     * Test if the topology follows the graph's leaving edges, in order, and is
+     * rebuilt once the graph changes
+     */
+    @Test
+    public void topologyTest() {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        g.addNode("A");
+        g.addNode("B");
+        g.addNode("C");
+        g.addEdge("AB", "A", "B", true);
+        g.addEdge("CA", "C", "A");
+
+        Topology t = g.getTopology();
+        assertEquals(g.getNodeCount(), t.numNodes());
+        assertTrue(t.hasDeadEnd());
+
+        for (int i = 0; i < g.getNodeCount(); i++) {
+            ExtendedNode n = g.getNode(i);
+            assertEquals(n.getOutDegree(), t.outDegree(i));
+
+            for (int k = 0; k < n.getOutDegree(); k++) {
+                Edge e = n.getLeavingEdge(k);
+                assertEquals(e.getOpposite(n).getIndex(), t.neighbour(i, k));
+                assertEquals(e.getIndex(), t.edge(i, k));
+            }
+        }
+
+        g.addEdge("BC", "B", "C", true);
+        assertFalse(g.getTopology().hasDeadEnd());
+    }
+}
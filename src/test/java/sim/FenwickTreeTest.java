@@ -0,0 +1,55 @@
+/*
+ * FenwickTreeTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class FenwickTreeTest {
+
+
+    /**
+     * Test if find() maps every value in [0, total) to the index covering it
+     */
+    @Test
+    public void findTest() {
+        long[] weights = {3, 0, 5, 1, 0, 0, 7};
+        FenwickTree t = new FenwickTree(weights.length);
+
+        for (int i = 0; i < weights.length; i++) {
+            t.add(i, weights[i]);
+        }
+
+        assertEquals(16, t.total());
+
+        int r = 0;
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(weights[i], t.get(i));
+
+            for (int k = 0; k < weights[i]; k++) {
+                assertEquals(i, t.find(r++));
+            }
+        }
+    }
+}
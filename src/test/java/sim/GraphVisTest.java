@@ -54,7 +54,7 @@ public class GraphVisTest {
         g.addNode("B");
         g.addEdge("AB", "A", "B");
 
-        GraphVis gv = GraphVis.getInstance();
+        GraphVis gv = new SimulatorContext().vis();
         gv.init(g);
 
 
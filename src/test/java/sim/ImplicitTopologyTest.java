@@ -0,0 +1,177 @@
+/*
+ * ImplicitTopologyTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+
+public class ImplicitTopologyTest {
+
+
+    /**
+     * Test if chain topologies are the same as generated chain graphs, down to
+     * the order of the leaving edges
+     */
+    @Test
+    public void chainTest() {
+        for (int i = 0; i < 8; i++) {
+            boolean directed = (i & 1) != 0;
+            boolean doublyLinked = (i & 2) != 0;
+            boolean loopBack = (i & 4) != 0;
+
+            GraphGeneratorSource ggs = new GraphGeneratorSource(new SimulatorContext());
+            ggs.graphChain(6, directed, doublyLinked, loopBack);
+
+            assertSame(generate(ggs), new ChainTopology(6, directed,
+                                                           doublyLinked,
+                                                           loopBack));
+        }
+    }
+
+
+    /**
+     * Test if fully connected topologies have the same edges as generated
+     * fully connected graphs. Undirected, also in the same order.
+     */
+    @Test
+    public void fullyConnectedTest() {
+        GraphGeneratorSource ggs = new GraphGeneratorSource(new SimulatorContext());
+        ggs.graphFullyConnected(6, false, false);
+        assertSame(generate(ggs), new FullyConnectedTopology(6, false));
+
+        ggs = new GraphGeneratorSource(new SimulatorContext());
+        ggs.graphFullyConnected(6, true, false);
+        assertAlike(generate(ggs), new FullyConnectedTopology(6, true));
+    }
+
+
+    /**
+     * Test if grid topologies have the same edges as generated grid graphs
+     */
+    @Test
+    public void gridTest() {
+        for (int i = 0; i < 4; i++) {
+            boolean directed = (i & 1) != 0;
+            boolean crossEdges = (i & 2) != 0;
+
+            GraphGeneratorSource ggs = new GraphGeneratorSource(new SimulatorContext());
+            ggs.graphGrid(5, directed, crossEdges);
+
+            assertAlike(generate(ggs), new GridTopology(5, directed,
+                                                           crossEdges));
+        }
+    }
+
+
+    /**
+     * Test if generated graphs are implicit only when not visualized, and
+     * that node IDs still resolve
+     */
+    @Test
+    public void generateGraphTest() {
+        GraphGeneratorSource ggs = new GraphGeneratorSource(new SimulatorContext());
+        ggs.graphGrid(4, false, false);
+
+        ExtendedGraph g = new ExtendedGraph("Test");
+        ggs.generateGraph(g);
+
+        assertTrue(g.isImplicit());
+        assertEquals(0, g.getNodeCount());
+        assertEquals(16, g.getNumNodes());
+        assertEquals("3_3", g.getNodeId(15));
+        assertEquals(15, g.getNodeIndex("3_3"));
+        assertEquals(-1, g.getNodeIndex("4_0"));
+        assertFalse(g.hasDeadEnd());
+
+        // Random directions can't be computed
+        ggs = new GraphGeneratorSource(new SimulatorContext());
+        ggs.graphFullyConnected(4, true, true);
+
+        g = new ExtendedGraph("Test");
+        ggs.generateGraph(g);
+        assertFalse(g.isImplicit());
+        assertEquals(4, g.getNodeCount());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private static ExtendedGraph generate(GraphGeneratorSource ggs) {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        ggs.generateNodesAndEdges(g);
+        return g;
+    }
+
+
+    /**
+     * Same nodes, and same leaving edges in the same order
+     */
+    private static void assertSame(ExtendedGraph g, ImplicitTopology t) {
+        Topology csr = g.getTopology();
+        assertAlike(g, t);
+
+        for (int i = 0; i < csr.numNodes(); i++) {
+            for (int k = 0; k < csr.outDegree(i); k++) {
+                assertEquals(csr.neighbour(i, k), t.neighbour(i, k));
+            }
+        }
+    }
+
+
+    /**
+     * Same nodes, and same leaving edges in any order
+     */
+    private static void assertAlike(ExtendedGraph g, ImplicitTopology t) {
+        Topology csr = g.getTopology();
+        assertEquals(csr.numNodes(), t.numNodes());
+        assertEquals(csr.hasDeadEnd(), t.hasDeadEnd());
+
+        for (int i = 0; i < csr.numNodes(); i++) {
+            String id = g.getNode(i).getId();
+            assertEquals(id, t.nodeId(i));
+            assertEquals(i, t.nodeIndex(id));
+            assertEquals(csr.outDegree(i), t.outDegree(i));
+
+            int[] expected = new int[csr.outDegree(i)];
+            int[] actual = new int[t.outDegree(i)];
+
+            for (int k = 0; k < expected.length; k++) {
+                expected[k] = csr.neighbour(i, k);
+                actual[k] = t.neighbour(i, k);
+            }
+
+            Arrays.sort(expected);
+            Arrays.sort(actual);
+            assertTrue(Arrays.equals(expected, actual));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * LeapTimeStepTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pmw.tinylog.Configurator;
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.Logger;
+
+
+public class LeapTimeStepTest {
+
+    private static final int NUM_AGENTS = 5000;
+    private static final int RUNS = 300;
+    private static final int MAX_STEPS = 10000000;
+    private static final double TOLERANCE = 0.03;
+
+    private Level logLevel;
+
+
+    @Before
+    public void preTest() {
+        logLevel = Logger.getLevel();
+        Configurator.currentConfig().level(Level.OFF).activate();
+    }
+
+
+    @After
+    public void postTest() {
+        Configurator.currentConfig().level(logLevel).activate();
+    }
+
+
+    /**
+     * Test if a completed run has every agent infected, and believing that
+     * election is complete, markers in order
+     */
+    @Test
+    public void completeTest() {
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+
+        LeapTimeStep ts = new LeapTimeStep(NUM_AGENTS, 4, 0, TOLERANCE, rs);
+        ts.runUntilComplete(MAX_STEPS);
+        ts.end();
+        SimulatorRun r = ts.getSimRun();
+
+        assertTrue(ts.isFlag_infectionComplete());
+        assertTrue(ts.isFlag_leaderElectionComplete());
+        assertTrue(ts.isFlag_allElectionComplete());
+        assertEquals(NUM_AGENTS, r.getInfections());
+        assertEquals(NUM_AGENTS, r.getElectionCompleteCount());
+        assertEquals(0, r.getTraversals());
+        assertTrue(r.getInfectionCompleteStep() <
+                   r.getLeaderElectionCompleteStep());
+        assertTrue(r.getLeaderElectionCompleteStep() <
+                   r.getAllElectionCompleteStep());
+        assertEquals(r.getAllElectionCompleteStep() + 1, r.getInteractions());
+    }
+
+
+    /**
+     * Test if the markers have the same means as those of CountTimeStep,
+     * within 4.5 standard errors
+     */
+    @Test
+    public void markersTest() {
+        double[][] count = new double[3][2];
+        double[][] leap = new double[3][2];
+
+        for (int i = 0; i < RUNS; i++) {
+            RandomSource rs = new RandomSource();
+            rs.seed(RandomSource.Generator.FAST,
+                    RandomSource.runSeed(7, NUM_AGENTS, i));
+            add(count, run(new CountTimeStep(NUM_AGENTS, 4, 0, rs)));
+
+            rs = new RandomSource();
+            rs.seed(RandomSource.Generator.FAST,
+                    RandomSource.runSeed(11, NUM_AGENTS, i));
+            add(leap, run(new LeapTimeStep(NUM_AGENTS, 4, 0, TOLERANCE, rs)));
+        }
+
+        for (int m = 0; m < 3; m++) {
+            double meanCount = count[m][0] / RUNS;
+            double meanLeap = leap[m][0] / RUNS;
+            double varCount = count[m][1] / RUNS - meanCount * meanCount;
+            double varLeap = leap[m][1] / RUNS - meanLeap * meanLeap;
+            double se = Math.sqrt((varCount + varLeap) / RUNS);
+
+            assertTrue("Marker " + m + ": " + meanCount + " vs " + meanLeap,
+                       Math.abs(meanCount - meanLeap) <= 4.5 * se);
+        }
+    }
+
+
+    /**
+     * Test if leaps stop at the max number of steps
+     */
+    @Test
+    public void maxStepsTest() {
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+
+        LeapTimeStep ts = new LeapTimeStep(NUM_AGENTS, 4, 0, TOLERANCE, rs);
+        ts.runUntilComplete(20000);
+        ts.end();
+
+        assertEquals(20000, ts.getSimRun().getInteractions());
+        assertEquals(0, ts.getSimRun().getInfectionCompleteStep());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    private static SimulatorRun run(RunEngine ts) {
+        ts.runUntilComplete(MAX_STEPS);
+        ts.end();
+        return ts.getSimRun();
+    }
+
+
+    /**
+     * Sum and sum of squares of the infection, leader election and all
+     * election complete steps
+     */
+    private static void add(double[][] sums, SimulatorRun r) {
+        double[] markers = {r.getInfectionCompleteStep(),
+                            r.getLeaderElectionCompleteStep(),
+                            r.getAllElectionCompleteStep()};
+
+        for (int m = 0; m < 3; m++) {
+            sums[m][0] += markers[m];
+            sums[m][1] += markers[m] * markers[m];
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * RandomSourceTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+
+public class RandomSourceTest {
+
+
+    /**
+     * Test if the same seed gives the same stream, for every generator
+     */
+    @Test
+    public void seedReproducibleTest() {
+        long seed = 2552;
+
+        for (RandomSource.Generator gen : RandomSource.Generator.values()) {
+            RandomSource a = new RandomSource();
+            RandomSource b = new RandomSource();
+            a.seed(gen, seed);
+            b.seed(gen, seed);
+
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(a.nextInt(1337), b.nextInt(1337));
+                assertEquals(a.nextDouble(), b.nextDouble(), 0.0);
+            }
+
+            assertEquals(seed, a.getSeed());
+        }
+    }
+
+
+    /**
+     * Test if every run, by number of agents and index, gets a seed of its
+     * own, and the same one every time
+     */
+    @Test
+    public void runSeedTest() {
+        HashSet<Long> seeds = new HashSet<Long>();
+
+        for (int numAgents = 1; numAgents <= 300; numAgents++) {
+            for (int run = 0; run < 300; run++) {
+                long seed = RandomSource.runSeed(2552, numAgents, run);
+
+                assertFalse(seeds.contains(seed));
+                seeds.add(seed);
+                assertEquals(seed, RandomSource.runSeed(2552, numAgents, run));
+            }
+        }
+
+        assertFalse(RandomSource.runSeed(2552, 10, 3) ==
+                    RandomSource.runSeed(2553, 10, 3));
+    }
+
+
+    /**
+     * Test if bounded ints stay within range and hit every value
+     */
+    @Test
+    public void nextIntRangeTest() {
+        int bound = 7;
+        int[] hits = new int[bound];
+        RandomGenerator rng = new Xoroshiro128PlusGenerator(17);
+
+        for (int i = 0; i < 70000; i++) {
+            int r = rng.nextInt(bound);
+            assertTrue(r >= 0 && r < bound);
+            hits[r]++;
+        }
+
+        // Expected 10000 each, loose bound to catch gross bias only
+        for (int h : hits) {
+            assertTrue(h > 9000 && h < 11000);
+        }
+    }
+
+
+    /**
+     * Test if Poisson draws have the right mean and variance, both for small
+     * means (inversion) and large ones (rejection)
+     */
+    @Test
+    public void nextPoissonTest() {
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 17);
+
+        int n = 40000;
+
+        for (double mean : new double[] {0.3, 4, 10, 57.5, 3000}) {
+            double sum = 0;
+            double sumSquares = 0;
+
+            for (int i = 0; i < n; i++) {
+                long k = rs.nextPoisson(mean);
+                assertTrue(k >= 0);
+
+                sum += k;
+                sumSquares += (double) k * k;
+            }
+
+            double m = sum / n;
+            double var = sumSquares / n - m * m;
+
+            // Mean within 5 standard errors, variance within 5%
+            assertTrue(mean + ": " + m,
+                       Math.abs(m - mean) < 5 * Math.sqrt(mean / n));
+            assertTrue(mean + ": " + var, Math.abs(var - mean) < 0.05 * mean);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * SimulatorMergeTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+import com.google.gson.Gson;
+
+
+public class SimulatorMergeTest {
+
+    private static final Topology CHAIN = TestSupport.topology("AB", "BC");
+
+    private String dir;
+    private String[] shardDirs;
+
+
+    @Before
+    public void preTest() throws IOException {
+        dir = "test.merge." + System.nanoTime();
+        shardDirs = new String[] {dir + "-1", dir + "-0"};
+
+        Files.createDirectories(Paths.get("logs", dir));
+        for (String shardDir : shardDirs) {
+            Files.createDirectories(Paths.get("logs", shardDir));
+        }
+    }
+
+
+    @After
+    public void postTest() {
+        delete(Paths.get("logs", dir).toFile());
+        for (String shardDir : shardDirs) {
+            delete(Paths.get("logs", shardDir).toFile());
+        }
+    }
+
+
+    /**
+     * Test if the runs of two shards, 10 and 11 agents with 2 runs each, are
+     * dealt back into run order, with the aggregates of the whole sweep
+     */
+    @Test
+    public void mergeTest() throws IOException {
+        // Shard 0 has runs 0 and 2, shard 1 has runs 1 and 3
+        writeShard(dir + "-0", 0, 7, CHAIN, run(10, 0, 10, 100),
+                                            run(11, 0, 5, 0));
+        writeShard(dir + "-1", 1, 7, CHAIN, run(10, 1, 10, 200),
+                                            run(11, 1, 11, 300));
+
+        SimulatorMerge.merge(shardDirs, dir, "t");
+
+        List<String> lines = Files.readAllLines(
+                                Paths.get("logs", dir, "data.t.jsonl"),
+                                StandardCharsets.UTF_8);
+        Gson gson = new Gson();
+
+        assertEquals(4, lines.size());
+        for (int i = 0; i < 4; i++) {
+            SimulatorRun r = gson.fromJson(lines.get(i), SimulatorRun.class);
+            assertEquals(10 + i / 2, r.getNumAgents());
+            assertEquals(i % 2, r.getRun());
+        }
+
+        String metadata = new String(Files.readAllBytes(
+                                Paths.get("logs", dir, "metadata.t.json")),
+                                StandardCharsets.UTF_8);
+
+        assertFalse(metadata.contains("\"shard\""));
+        assertTrue(metadata.contains("\"totalRuns\": 4"));
+        assertTrue(metadata.contains("\"seed\": 7"));
+        assertTrue(metadata.contains("\"avg_leaderError\": \"25.00%\""));
+        assertTrue(Paths.get("logs", dir, "chart.t.png").toFile().exists());
+    }
+
+
+    /**
+     * Test if shards of sweeps with different settings are not merged
+     */
+    @Test
+    public void differentSettingsTest() throws IOException {
+        writeShard(dir + "-0", 0, 7, CHAIN, run(10, 0, 10, 100),
+                                            run(11, 0, 5, 0));
+        writeShard(dir + "-1", 1, 8, CHAIN, run(10, 1, 10, 200),
+                                            run(11, 1, 11, 300));
+
+        try {
+            SimulatorMerge.merge(shardDirs, dir, "t");
+            fail("Shards with different seeds merged");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("seed"));
+        }
+    }
+
+
+    /**
+     * Test if shards run on different graphs, of the same number of nodes
+     * and edges, are not merged
+     */
+    @Test
+    public void differentGraphTest() throws IOException {
+        writeShard(dir + "-0", 0, 7, CHAIN, run(10, 0, 10, 100),
+                                            run(11, 0, 5, 0));
+        writeShard(dir + "-1", 1, 7, TestSupport.topology("AC", "BA"),
+                   run(10, 1, 10, 200), run(11, 1, 11, 300));
+
+        try {
+            SimulatorMerge.merge(shardDirs, dir, "t");
+            fail("Shards of different graphs merged");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("topologyFingerprint"));
+        }
+    }
+
+
+    /**
+     * Shard of 2 of a sweep of 10 and 11 agents, 2 runs each, on a graph of
+     * 3 nodes
+     */
+    private static void writeShard(String dir, int index, long seed,
+                                   Topology topology,
+                                   SimulatorRun... runs) throws IOException {
+        SimulatorMetaData smd = new SimulatorMetaData();
+        smd.setNumNodes(3);
+        smd.setTopology(topology);
+        smd.setNumAgents(Range.closedOpen(10, 12));
+        smd.setRuns(2);
+        smd.setSeed(seed);
+        smd.setShard(index, 2);
+        smd.setTotalRuns(runs.length);
+        JSONUtil.writeJSON(dir, "metadata", "s", smd, true);
+
+        BufferedWriter writer = Files.newBufferedWriter(
+                                    Paths.get("logs", dir, "data.s.jsonl"),
+                                    StandardCharsets.UTF_8);
+        try {
+            for (SimulatorRun r : runs) {
+                writer.write(new Gson().toJson(r));
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+
+        dir.delete();
+    }
+
+
+    private static SimulatorRun run(int numAgents, int run,
+                                                   int infections,
+                                                   int leaderComplete) {
+        SimulatorRun r = new SimulatorRun();
+        r.setNumAgents(numAgents);
+        r.setRun(run);
+        r.setInfections(infections);
+        r.setInfectionCompleteInteractions(infections == numAgents ? 50 : 0);
+        r.setLeaderElectionCompleteInteractions(leaderComplete);
+
+        return r;
+    }
+}
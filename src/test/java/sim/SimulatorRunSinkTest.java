@@ -0,0 +1,199 @@
+/*
+ * SimulatorRunSinkTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+
+public class SimulatorRunSinkTest {
+
+
+    /**
+     * Test if runs are taken in run order, and the aggregates over them
+     */
+    @Test
+    public void addTest() {
+        SimulatorRunSink sink = new SimulatorRunSink(4);
+
+        // Infection complete, leader right
+        sink.add(1, run(10, 10, 100, 200));
+        assertEquals(0, sink.getTotalRuns());
+
+        // Infection complete, leader called it too early
+        sink.add(2, run(10, 10, 300, 200));
+        assertEquals(0, sink.getTotalRuns());
+
+        // Infection incomplete, leader never called it
+        sink.add(0, run(10, 5, 0, 0));
+        assertEquals(3, sink.getTotalRuns());
+
+        assertEquals(1, sink.getLeaderOverTaken());
+        assertEquals(1, sink.getInfectionIncomplete());
+        assertEquals(200.0 / 3, sink.getAvgLeaderError(), 1e-9);
+        assertEquals(250.0 / 3, sink.getAvgInfectionLevel(), 1e-9);
+    }
+
+
+    /**
+     * Test if a sink restored from a checkpoint carries on as if it had never
+     * stopped, with runs written after the checkpoint dropped
+     */
+    @Test
+    public void checkpointTest() throws IOException {
+        String dir = "test.checkpoint." + System.nanoTime();
+        String resumedDir = dir + "-resumed";
+        Files.createDirectories(Paths.get("logs", dir));
+        Files.createDirectories(Paths.get("logs", resumedDir));
+
+        try {
+            SimulatorRunSink sink = new SimulatorRunSink(4);
+            sink.open(dir, "t");
+
+            SimulatorCheckpoint c = new SimulatorCheckpoint();
+            c.setTimestamp("t");
+            c.setSeed(2552);
+            c.setDataSaved(true);
+
+            // Saved on every add
+            sink.setCheckpoint(c, dir, 0);
+            sink.add(0, run(10, 5, 0, 0));
+            sink.add(1, run(10, 10, 100, 200));
+
+            // Written, but the simulation stops before the next checkpoint
+            sink.setCheckpoint(c, dir, 3600);
+            sink.add(2, run(10, 10, 300, 200));
+            sink.close();
+
+            SimulatorCheckpoint saved = SimulatorCheckpoint.read(dir);
+            assertEquals(2, saved.getNextRun());
+            assertEquals(2552, saved.getSeed());
+            assertEquals(3, lines(dir, "t"));
+
+
+            SimulatorRunSink resumed = new SimulatorRunSink(4);
+            resumed.open(resumedDir, "u");
+            resumed.restore(saved, dir);
+            assertEquals(2, resumed.getNextRun());
+
+            resumed.add(2, run(10, 10, 300, 200));
+            resumed.close();
+
+            assertEquals(3, resumed.getTotalRuns());
+            assertEquals(1, resumed.getLeaderOverTaken());
+            assertEquals(1, resumed.getInfectionIncomplete());
+            assertEquals(200.0 / 3, resumed.getAvgLeaderError(), 1e-9);
+            assertEquals(250.0 / 3, resumed.getAvgInfectionLevel(), 1e-9);
+            assertEquals(3, lines(resumedDir, "u"));
+        } finally {
+            delete(Paths.get("logs", dir).toFile());
+            delete(Paths.get("logs", resumedDir).toFile());
+        }
+    }
+
+
+    /**
+     * Test if checkpoints of simulations that differ in a setting that
+     * changes results are told apart
+     */
+    @Test
+    public void differingSettingTest() {
+        SimulatorCheckpoint c = checkpoint();
+        assertNull(c.differingSetting(checkpoint()));
+
+        SimulatorCheckpoint o = checkpoint();
+        o.setActionProbability(Simulator.ActionSelection.WEIGHTED, 0.6, 0.4);
+        assertEquals("actionProbability", c.differingSetting(o));
+
+        o = checkpoint();
+        o.setAgentDistSINGLE_nodeID("B");
+        assertEquals("SINGLE node ID", c.differingSetting(o));
+
+        o = checkpoint();
+        o.setLeapTolerance(0.05);
+        assertEquals("leapTolerance", c.differingSetting(o));
+
+        o = checkpoint();
+        o.setGraphType(GraphGeneratorSource.GraphType.GRID);
+        assertEquals("graphType", c.differingSetting(o));
+
+        // Same number of nodes and edges, different structure
+        o = checkpoint();
+        o.setTopology(TestSupport.topology("AC", "BA"));
+        assertEquals("graph", c.differingSetting(o));
+    }
+
+
+    private static int lines(String dir, String timestamp) throws IOException {
+        Path path = Paths.get("logs", dir, "data." + timestamp + ".jsonl");
+        return Files.readAllLines(path, StandardCharsets.UTF_8).size();
+    }
+
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+
+        dir.delete();
+    }
+
+
+    private static SimulatorCheckpoint checkpoint() {
+        SimulatorCheckpoint c = new SimulatorCheckpoint();
+        c.setGraphType(GraphGeneratorSource.GraphType.CHAIN);
+        c.setNumNodes(3);
+        c.setTopology(TestSupport.topology("AB", "BC"));
+        c.setActionProbability(Simulator.ActionSelection.NON_WEIGHTED, 0.5,
+                                                                       0.5);
+        c.setAgentDistSINGLE_nodeID("A");
+        c.setLeapTolerance(0.03);
+
+        return c;
+    }
+
+
+    private static SimulatorRun run(int numAgents, int infections,
+                                                   int infectionComplete,
+                                                   int leaderComplete) {
+        SimulatorRun r = new SimulatorRun();
+        r.setNumAgents(numAgents);
+        r.setInfections(infections);
+        r.setInfectionCompleteInteractions(infectionComplete);
+        r.setLeaderElectionCompleteInteractions(leaderComplete);
+
+        return r;
+    }
+}
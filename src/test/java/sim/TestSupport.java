@@ -0,0 +1,115 @@
+/*
+ * TestSupport.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import java.util.HashMap;
+
+import com.google.common.collect.Range;
+
+import sim.AgentDistribution.Distribution;
+import sim.Simulator.NodeSelection;
+
+
+/**
+ * Set up shared by the tests and the JMH benchmarks
+ *
+ */
+class TestSupport {
+
+
+    /**
+     * Term B of a run whose election never completes, so that every step
+     * does the full work. It goes with a term A of 0: term A is multiplied
+     * by the conversions of an agent, and a high one would overflow.
+     */
+    static final int TERM_B_NEVER = Integer.MAX_VALUE / 2;
+
+
+    /**
+     * Set up a graph for a run and distribute its agents, as the Simulator
+     * does before each run. Both actions are set up for weighted selection,
+     * interact with a probability of 0.25.
+     *
+     * @param g Graph, with its nodes and edges
+     * @param numAgents Number of agents
+     * @param distribution How agents are distributed, SINGLE puts them in
+     *                     the first node
+     * @param nodeSelection How nodes are selected
+     * @param rs Random source, seeded, init'ed here with the graph
+     */
+    static void populate(ExtendedGraph g, int numAgents,
+                         Distribution distribution,
+                         NodeSelection nodeSelection, RandomSource rs) {
+        g.setNumAgents(numAgents);
+        g.setAgentDistribution(distribution);
+        g.setSINGLE_nodeID(g.getNodeId(0));
+        g.setNodeSelection(nodeSelection);
+        g.setActionProbabilitySpread(actionProbabilitySpread(0.25));
+        g.hasDeadEnd();
+
+        g.reset();
+        rs.init(g, g.getPopulation());
+
+        AgentDistribution dist = new AgentDistribution(rs, null);
+        dist.init(g, g.getPopulation());
+        dist.execute();
+    }
+
+
+    /**
+     * Action probability spread, as the Simulator makes it for weighted
+     * action selection
+     *
+     * @param interact Probability of the interact action
+     * @return Spread of both actions over [0, 1)
+     */
+    static HashMap<Integer, Range<Double>> actionProbabilitySpread(
+                                                            double interact) {
+        HashMap<Integer, Range<Double>> map =
+            new HashMap<Integer, Range<Double>>();
+        map.put(TimeStep.ACTION_INTERACT, Range.closedOpen(0.0, interact));
+        map.put(TimeStep.ACTION_TRAVERSE, Range.closedOpen(interact, 1.0));
+
+        return map;
+    }
+
+
+    /**
+     * Topology of a directed graph of nodes A, B and C
+     *
+     * @param edges Edges, each as the IDs of its two nodes, "AB" for A to B
+     * @return Topology
+     */
+    static Topology topology(String... edges) {
+        ExtendedGraph g = new ExtendedGraph("Test");
+        g.addNode("A");
+        g.addNode("B");
+        g.addNode("C");
+
+        for (String e : edges) {
+            g.addEdge(e, e.substring(0, 1), e.substring(1), true);
+        }
+
+        return g.getTopology();
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * TimeStepTest.java
+ * infection
+ *
+ * Copyright (C) 2014  beltex <https://github.com/beltex>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pmw.tinylog.Configurator;
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.Logger;
+
+import sim.AgentDistribution.Distribution;
+import sim.Simulator.ActionSelection;
+import sim.Simulator.NodeSelection;
+
+
+public class TimeStepTest {
+
+    private ExtendedGraph g;
+    private Level logLevel;
+
+    @Before
+    public void preTest() {
+        g = new ExtendedGraph("Test");
+
+        // Simple sample graph
+        g.addNode("A");
+        g.addNode("B");
+        g.addNode("C");
+        g.addNode("D");
+        g.addNode("E");
+        g.addNode("F");
+        g.addEdge("AB", "A", "B");
+        g.addEdge("BC", "B", "C");
+        g.addEdge("CD", "C", "D");
+        g.addEdge("DE", "D", "E");
+        g.addEdge("EA", "E", "A");
+        g.addEdge("EF", "E", "F");
+
+        // Measure the step itself, not the writer
+        logLevel = Logger.getLevel();
+        Configurator.currentConfig().level(Level.OFF).activate();
+    }
+
+
+    @After
+    public void postTest() {
+        Configurator.currentConfig().level(logLevel).activate();
+    }
+
+
+    /**
+     * Test if a time step, once warmed up, allocates nothing on the heap
+     */
+    @Test
+    public void stepAllocationTest() {
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+        TestSupport.populate(g, 500, Distribution.EVEN_SPREAD,
+                             NodeSelection.NON_WEIGHTED, rs);
+
+        // Never completes, so that only the steady-state step is measured
+        TimeStep ts = new TimeStep(g, g.getPopulation(), 0,
+                                   TestSupport.TERM_B_NEVER,
+                                   ActionSelection.NON_WEIGHTED, rs, null);
+
+        assertEquals(0, stepAllocation(ts));
+        assertFalse(ts.isFlag_leaderElectionComplete());
+    }
+
+
+    /**
+     * Test if a time step, for every action and node selection, allocates
+     * nothing on the heap with logging on but not at the debug level. The
+     * debug guards of step() are then checked on every step, and must cost
+     * nothing.
+     */
+    @Test
+    public void debugOffAllocationTest() {
+        Configurator.currentConfig().level(Level.INFO).activate();
+
+        for (ActionSelection as : ActionSelection.values()) {
+            for (NodeSelection ns : NodeSelection.values()) {
+                RandomSource rs = new RandomSource();
+                rs.seed(RandomSource.Generator.FAST, 2552);
+                TestSupport.populate(g, 500, Distribution.EVEN_SPREAD, ns,
+                                     rs);
+
+                TimeStep ts = new TimeStep(g, g.getPopulation(), 0,
+                                           TestSupport.TERM_B_NEVER, as, rs,
+                                           null);
+
+                assertEquals(as + "/" + ns, 0, stepAllocation(ts));
+            }
+        }
+    }
+
+
+    /**
+     * Test if the infection, election complete and leader counts of the
+     * population, kept as agents move and change, match a count of the agents
+     */
+    @Test
+    public void stateCountsTest() {
+        int numAgents = 200;
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+        TestSupport.populate(g, numAgents, Distribution.RANDOM_SPREAD,
+                             NodeSelection.NON_WEIGHTED, rs);
+
+        Population p = g.getPopulation();
+        AgentStore agents = p.getAgentStore();
+        TimeStep ts = new TimeStep(g, p, 4, 1, ActionSelection.NON_WEIGHTED,
+                                   rs, null);
+
+        for (int k = 0; k < 20; k++) {
+            ts.runUntilComplete(5000 * (k + 1));
+
+            int infectedTotal = 0;
+            int completeTotal = 0;
+            int leaderNodes = 0;
+
+            for (int node = 0; node < g.getNodeCount(); node++) {
+                int infected = 0;
+                int complete = 0;
+                boolean leader = false;
+
+                for (int i = 0; i < p.getAgentCount(node); i++) {
+                    int slot = p.getAgent(node, i);
+
+                    if (agents.getLeaderAID(slot) == numAgents - 1) {
+                        infected++;
+                    }
+                    if (agents.isElectionComplete(slot)) {
+                        complete++;
+                    }
+                    if (slot == numAgents - 1) {
+                        leader = true;
+                        leaderNodes++;
+                    }
+                }
+
+                assertEquals(infected, p.infectionCount(node));
+                assertEquals(complete, p.electionCompleteCount(node));
+                assertEquals(leader, p.containsLeader(node));
+
+                infectedTotal += infected;
+                completeTotal += complete;
+            }
+
+            assertEquals(infectedTotal, p.infectionCount());
+            assertEquals(completeTotal, p.electionCompleteCount());
+            assertEquals(1, leaderNodes);
+        }
+
+        // The run got as far as the counts that matter
+        assertTrue(p.infectionCount() > 1);
+        assertTrue(p.electionCompleteCount() > 0);
+    }
+
+
+    /**
+     * Test if a run restored from a mid-run snapshot, into a population and
+     * random source of its own, carries on exactly as the original run
+     */
+    @Test
+    public void snapshotTest() throws IOException {
+        RandomSource rs = new RandomSource();
+        rs.seed(RandomSource.Generator.FAST, 2552);
+        TestSupport.populate(g, 200, Distribution.RANDOM_SPREAD,
+                             NodeSelection.NON_WEIGHTED, rs);
+
+        Population p = g.getPopulation();
+        TimeStep ts = new TimeStep(g, p, 4, 1, ActionSelection.NON_WEIGHTED,
+                                   rs, null);
+        ts.runUntilComplete(300);
+        assertFalse(ts.isFlag_allElectionComplete());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ts.snapshot(new DataOutputStream(bytes));
+
+        ts.runUntilComplete(Integer.MAX_VALUE);
+        ts.end();
+
+        Population restoredP = new Population(p.getTopology());
+        RandomSource restoredRs = new RandomSource();
+        TimeStep restored = TimeStep.restore(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+            g, restoredP, restoredRs, null);
+        assertEquals(300, restored.getStep());
+
+        restored.runUntilComplete(Integer.MAX_VALUE);
+        restored.end();
+
+        SimulatorRun run = ts.getSimRun();
+        SimulatorRun restoredRun = restored.getSimRun();
+
+        assertEquals(ts.getStep(), restored.getStep());
+        assertEquals(run.getInfections(), restoredRun.getInfections());
+        assertEquals(run.getInteractions(), restoredRun.getInteractions());
+        assertEquals(run.getTraversals(), restoredRun.getTraversals());
+        assertEquals(run.getInfectionCompleteStep(),
+                     restoredRun.getInfectionCompleteStep());
+        assertEquals(run.getLeaderElectionCompleteStep(),
+                     restoredRun.getLeaderElectionCompleteStep());
+        assertEquals(run.getAllElectionCompleteStep(),
+                     restoredRun.getAllElectionCompleteStep());
+        assertEquals(p.infectionCount(), restoredP.infectionCount());
+        assertEquals(p.electionCompleteCount(),
+                     restoredP.electionCompleteCount());
+        assertEquals(rs.getRejections(), restoredRs.getRejections());
+
+
+        // Same number of nodes, other edges
+        ExtendedGraph other = new ExtendedGraph("Other");
+        for (String id : new String[] {"A", "B", "C", "D", "E", "F"}) {
+            other.addNode(id);
+        }
+        other.addEdge("AB", "A", "B");
+        other.addEdge("BC", "B", "C");
+        other.addEdge("CD", "C", "D");
+        other.addEdge("DE", "D", "E");
+        other.addEdge("EF", "E", "F");
+        other.addEdge("FA", "F", "A");
+
+        try {
+            TimeStep.restore(new DataInputStream(
+                                new ByteArrayInputStream(bytes.toByteArray())),
+                             other, new Population(other.getTopology()),
+                             new RandomSource(), null);
+            fail("Snapshot restored over a different graph");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("different graph"));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ///////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Bytes allocated on the heap by this thread over a million steps, once
+     * warmed up, so that the JIT has compiled step()
+     *
+     * @param ts Time step of a run that does not complete
+     * @return Bytes allocated, less those of the measurement itself
+     */
+    private static long stepAllocation(TimeStep ts) {
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+
+        for (int i = 0; i < 2000000; i++) {
+            ts.step();
+        }
+
+        // Cost of the measurement itself
+        long before = bean.getThreadAllocatedBytes(tid);
+        long overhead = bean.getThreadAllocatedBytes(tid) - before;
+
+        before = bean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 1000000; i++) {
+            ts.step();
+        }
+
+        return bean.getThreadAllocatedBytes(tid) - before - overhead;
+    }
+}